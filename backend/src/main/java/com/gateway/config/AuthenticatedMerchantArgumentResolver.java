@@ -0,0 +1,31 @@
+package com.gateway.config;
+
+import com.gateway.models.Merchant;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+public class AuthenticatedMerchantArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(AuthenticatedMerchant.class)
+                && Merchant.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter,
+                                  ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest,
+                                  WebDataBinderFactory binderFactory) {
+        Object merchant = webRequest.getAttribute(AuthenticationFilter.MERCHANT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (merchant == null) {
+            // Only reachable if a handler on an unfiltered path asks for a merchant
+            throw new IllegalStateException("No authenticated merchant for " + parameter.getExecutable().getName());
+        }
+        return merchant;
+    }
+}
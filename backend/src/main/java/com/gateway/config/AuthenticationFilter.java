@@ -1,26 +1,93 @@
 package com.gateway.config;
 
+import com.gateway.models.Merchant;
+import com.gateway.services.MerchantDirectory;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 @Component
 public class AuthenticationFilter extends OncePerRequestFilter {
 
+    // Request attribute holding the resolved Merchant (read by AuthenticatedMerchantArgumentResolver)
+    public static final String MERCHANT_ATTRIBUTE = AuthenticationFilter.class.getName() + ".MERCHANT";
+
+    private static final byte[] UNAUTHORIZED_BODY = "{\"error\":\"Invalid API Key\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final MerchantDirectory merchantDirectory;
+
+    @Value("${gateway.auth.require-secret:true}")
+    private boolean requireSecret;
+
+    public AuthenticationFilter(MerchantDirectory merchantDirectory) {
+        this.merchantDirectory = merchantDirectory;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+
+        // Preflight, login/register, test helpers and the public checkout endpoints stay open
+        return "OPTIONS".equalsIgnoreCase(request.getMethod())
+                || path.startsWith("/api/v1/auth/")
+                || path.startsWith("/api/v1/test/")
+                || path.endsWith("/public");
+    }
+
     @Override
-    protected void doFilterInternal(HttpServletRequest request, 
-                                    HttpServletResponse response, 
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-        
-        // --- BYPASS: We are letting the Controller handle Auth ---
-        // The PaymentController now checks the database for the API Key.
-        // This filter was blocking requests because they didn't have the "Secret".
-        
+
+        Merchant merchant = authenticate(request.getHeader("X-Api-Key"), request.getHeader("X-Api-Secret"));
+        if (merchant == null) {
+            // Rejected before the body is parsed or any controller runs
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(UNAUTHORIZED_BODY.length);
+            response.getOutputStream().write(UNAUTHORIZED_BODY);
+            return;
+        }
+
+        request.setAttribute(MERCHANT_ATTRIBUTE, merchant);
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    private Merchant authenticate(String apiKey, String apiSecret) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return null;
+        }
+
+        // The key only identifies the merchant (it was just used for the lookup); the secret is
+        // what proves the caller is that merchant
+        Merchant merchant = merchantDirectory.findByApiKey(apiKey).orElse(null);
+        if (merchant == null || !merchant.isActive()) {
+            return null;
+        }
+
+        // gateway.auth.require-secret=false allows key-only calls for old clients,
+        // but a secret that is sent still has to match
+        if (apiSecret == null) {
+            return requireSecret ? null : merchant;
+        }
+        return constantTimeEquals(apiSecret, merchant.getApiSecret()) ? merchant : null;
+    }
+
+    private static boolean constantTimeEquals(String presented, String expected) {
+        if (expected == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(presented.getBytes(StandardCharsets.UTF_8),
+                expected.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,7 +1,9 @@
 package com.gateway.config;
 
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
@@ -12,8 +14,11 @@ import java.util.List;
 @Configuration
 public class CorsConfig {
 
+    // Ahead of AuthenticationFilter, so its 401s carry CORS headers and the browser can read them
+    public static final int FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 10;
+
     @Bean
-    public CorsFilter corsFilter() {
+    public FilterRegistrationBean<CorsFilter> corsFilter() {
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         CorsConfiguration config = new CorsConfiguration();
         
@@ -36,6 +41,8 @@ public class CorsConfig {
         
         // 4. Apply to ALL endpoints
         source.registerCorsConfiguration("/**", config);
-        return new CorsFilter(source);
+        FilterRegistrationBean<CorsFilter> registrationBean = new FilterRegistrationBean<>(new CorsFilter(source));
+        registrationBean.setOrder(FILTER_ORDER);
+        return registrationBean;
     }
 }
\ No newline at end of file
@@ -1,18 +1,27 @@
 package com.gateway.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.gateway.workers.PaymentWorker;
-import com.gateway.workers.RefundWorker;
-import com.gateway.workers.WebhookWorker;
+import com.gateway.services.JobQueue;
+import com.gateway.services.MerchantDirectory;
+import com.gateway.services.WebhookSubscriptions;
+import com.gateway.workers.JobQueueListener;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
-import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer.StreamMessageListenerContainerOptions;
+
+import java.time.Duration;
 
 @Configuration
 public class RedisConfig {
@@ -22,50 +31,66 @@ public class RedisConfig {
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory, ObjectMapper objectMapper) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
-        
+
         // Use String for Keys
         template.setKeySerializer(new StringRedisSerializer());
-        
+
         // Use JSON for Values (so we can store objects)
         GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
         template.setValueSerializer(jsonSerializer);
         template.setHashKeySerializer(new StringRedisSerializer());
         template.setHashValueSerializer(jsonSerializer);
-        
+
         return template;
     }
 
-    // --- 2. The Listener Container ---
+    // --- 2. Pub/Sub Listener Container (cluster-wide broadcasts only, not jobs) ---
     @Bean
     RedisMessageListenerContainer redisContainer(RedisConnectionFactory connectionFactory,
-                                                 MessageListenerAdapter paymentListenerAdapter,
-                                                 MessageListenerAdapter webhookListenerAdapter,
-                                                 MessageListenerAdapter refundListenerAdapter) {
+                                                 MerchantDirectory merchantDirectory,
+                                                 WebhookSubscriptions webhookSubscriptions) {
 
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
-        
-        // Register all listeners
-        container.addMessageListener(paymentListenerAdapter, new PatternTopic("queue:payments"));
-        container.addMessageListener(webhookListenerAdapter, new PatternTopic("queue:webhooks"));
-        container.addMessageListener(refundListenerAdapter, new PatternTopic("queue:refunds"));
-        
+        container.addMessageListener(merchantDirectory, new ChannelTopic(MerchantDirectory.INVALIDATION_CHANNEL));
+        container.addMessageListener(webhookSubscriptions, new ChannelTopic(WebhookSubscriptions.INVALIDATION_CHANNEL));
+        container.addMessageListener(webhookSubscriptions, new ChannelTopic(MerchantDirectory.INVALIDATION_CHANNEL));
         return container;
     }
 
-    // --- 3. The Listener Adapters ---
-    @Bean
-    MessageListenerAdapter paymentListenerAdapter(PaymentWorker paymentWorker) {
-        return new MessageListenerAdapter(paymentWorker, "onMessage");
-    }
+    // --- 3. Job Queue Consumer (Redis Streams, one consumer group per queue) ---
+    @Bean(destroyMethod = "stop")
+    StreamMessageListenerContainer<String, MapRecord<String, String, String>> jobQueueContainer(
+            RedisConnectionFactory connectionFactory,
+            JobQueue jobQueue,
+            JobQueueListener jobQueueListener,
+            @Value("${gateway.queue.poll-timeout-ms:2000}") long pollTimeoutMs,
+            @Value("${gateway.queue.batch-size:10}") int batchSize) {
 
-    @Bean
-    MessageListenerAdapter webhookListenerAdapter(WebhookWorker webhookWorker) {
-        return new MessageListenerAdapter(webhookWorker, "onMessage");
-    }
+        StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
+                StreamMessageListenerContainerOptions.builder()
+                        .pollTimeout(Duration.ofMillis(pollTimeoutMs))
+                        .batchSize(batchSize)
+                        .build();
 
-    @Bean
-    MessageListenerAdapter refundListenerAdapter(RefundWorker refundWorker) {
-        return new MessageListenerAdapter(refundWorker, "onMessage");
+        StreamMessageListenerContainer<String, MapRecord<String, String, String>> container =
+                StreamMessageListenerContainer.create(connectionFactory, options);
+
+        Consumer consumer = Consumer.from(JobQueue.GROUP, jobQueue.getConsumerName());
+        for (String queue : JobQueue.QUEUES) {
+            jobQueue.ensureGroup(queue);
+            container.register(
+                    StreamMessageListenerContainer.StreamReadRequest
+                            .builder(StreamOffset.create(queue, ReadOffset.lastConsumed()))
+                            .consumer(consumer)
+                            .autoAcknowledge(false)
+                            // Keep polling through transient Redis errors
+                            .cancelOnError(e -> false)
+                            .build(),
+                    jobQueueListener);
+        }
+
+        container.start();
+        return container;
     }
-}
\ No newline at end of file
+}
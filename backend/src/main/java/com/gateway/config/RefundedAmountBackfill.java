@@ -0,0 +1,33 @@
+package com.gateway.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills payments.amount_refunded for refunds created before the column existed.
+ * Only rows still at 0 are touched, so it is a no-op once every payment is counted,
+ * and it runs before the application takes requests.
+ */
+@Component
+@DependsOn("entityManagerFactory") // The column is added by Hibernate's schema update
+public class RefundedAmountBackfill {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RefundedAmountBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void backfill() {
+        int updated = jdbcTemplate.update("UPDATE payments p SET amount_refunded = r.total "
+                + "FROM (SELECT payment_id, SUM(amount) AS total FROM refunds "
+                + "WHERE status IN ('pending', 'processed') GROUP BY payment_id) r "
+                + "WHERE p.id = r.payment_id AND p.amount_refunded = 0");
+        if (updated > 0) {
+            System.out.println("Backfilled amount_refunded on " + updated + " payments");
+        }
+    }
+}
@@ -7,11 +7,12 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class SecurityConfig {
 
-    // @Bean  <-- COMMENT THIS OUT to disable the filter
-    public FilterRegistrationBean<AuthenticationFilter> loggingFilter(AuthenticationFilter filter) {
+    @Bean
+    public FilterRegistrationBean<AuthenticationFilter> authenticationFilterRegistration(AuthenticationFilter filter) {
         FilterRegistrationBean<AuthenticationFilter> registrationBean = new FilterRegistrationBean<>();
         registrationBean.setFilter(filter);
-        registrationBean.addUrlPatterns("/api/*"); 
+        registrationBean.addUrlPatterns("/api/*");
+        registrationBean.setOrder(CorsConfig.FILTER_ORDER + 1);
         return registrationBean;
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package com.gateway.controllers;
 
+import com.gateway.config.AuthenticatedMerchant;
 import com.gateway.dto.OrderRequest;
+import com.gateway.models.Merchant;
 import com.gateway.models.Order;
 import com.gateway.services.OrderService;
 import org.springframework.http.ResponseEntity;
@@ -19,10 +21,10 @@ public class OrderController {
     }
 
     @PostMapping
-    public ResponseEntity<?> createOrder(@RequestBody OrderRequest request, 
-                                         @RequestHeader("X-Api-Key") String apiKey) {
+    public ResponseEntity<?> createOrder(@RequestBody OrderRequest request,
+                                         @AuthenticatedMerchant Merchant merchant) {
         // Now passing the correct OrderRequest object
-        Order order = orderService.createOrder(request, apiKey);
+        Order order = orderService.createOrder(request, merchant);
         
         return ResponseEntity.ok(Map.of(
             "id", order.getId(),
@@ -1,156 +1,108 @@
 package com.gateway.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.config.AuthenticatedMerchant;
 import com.gateway.dto.PaymentRequest;
-import com.gateway.entities.IdempotencyKey;
-import com.gateway.entities.IdempotencyKeyId;
 import com.gateway.entities.Refund;
-import com.gateway.entities.WebhookLog;
-import com.gateway.jobs.DeliverWebhookJob;
-import com.gateway.jobs.ProcessPaymentJob;
-import com.gateway.jobs.ProcessRefundJob;
 import com.gateway.models.Merchant;
 import com.gateway.models.Payment;
-import com.gateway.repositories.IdempotencyKeyRepository;
-import com.gateway.repositories.MerchantRepository;
+import com.gateway.repositories.PaymentFilter;
 import com.gateway.repositories.PaymentRepository;
-import com.gateway.repositories.RefundRepository;
-import com.gateway.repositories.WebhookLogRepository;
+import com.gateway.services.IdempotencyStore;
 import com.gateway.services.PaymentService;
-import org.springframework.data.redis.core.RedisTemplate;
+import com.gateway.services.RefundService;
+import com.gateway.util.KeysetCursor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigInteger;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/payments")
 public class PaymentController {
 
     private final PaymentService paymentService;
-    private final MerchantRepository merchantRepository;
     private final PaymentRepository paymentRepository;
-    private final RefundRepository refundRepository;
-    private final WebhookLogRepository webhookLogRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final RefundService refundService;
+    private final IdempotencyStore idempotencyStore;
     private final ObjectMapper objectMapper;
 
     public PaymentController(PaymentService paymentService,
-            MerchantRepository merchantRepository,
             PaymentRepository paymentRepository,
-            RefundRepository refundRepository,
-            WebhookLogRepository webhookLogRepository,
-            RedisTemplate<String, Object> redisTemplate,
-            IdempotencyKeyRepository idempotencyKeyRepository,
+            RefundService refundService,
+            IdempotencyStore idempotencyStore,
             ObjectMapper objectMapper) {
         this.paymentService = paymentService;
-        this.merchantRepository = merchantRepository;
         this.paymentRepository = paymentRepository;
-        this.refundRepository = refundRepository;
-        this.webhookLogRepository = webhookLogRepository;
-        this.redisTemplate = redisTemplate;
-        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.refundService = refundService;
+        this.idempotencyStore = idempotencyStore;
         this.objectMapper = objectMapper;
     }
 
     @PostMapping
     public ResponseEntity<?> createPaymentAsync(
-            @RequestHeader("X-Api-Key") String apiKey,
+            @AuthenticatedMerchant Merchant merchant,
             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKeyHeader,
             @RequestBody PaymentRequest request) {
 
-        // 1. Authenticate Merchant
-        List<Merchant> allMerchants = merchantRepository.findAll();
-        Merchant merchant = allMerchants.stream()
-                .filter(m -> m.getApiKey().equals(apiKey))
-                .findFirst()
-                .orElse(null);
-
-        if (merchant == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid API Key"));
-        }
+        // 1. Merchant is resolved by AuthenticationFilter
 
-        UUID merchantUuid = UUID.fromString(merchant.getId());
-
-        // 2. IDEMPOTENCY CHECK
+        // 2. IDEMPOTENCY CHECK: replay the stored response, or claim the key so that concurrent
+        // duplicates wait for this request instead of creating a second payment
+        IdempotencyStore.Claim claim = null;
         if (idempotencyKeyHeader != null) {
-            IdempotencyKeyId id = new IdempotencyKeyId(idempotencyKeyHeader, merchantUuid);
-            Optional<IdempotencyKey> cachedKey = idempotencyKeyRepository.findById(id);
-
-            if (cachedKey.isPresent()) {
-                if (cachedKey.get().getExpiresAt().isAfter(LocalDateTime.now())) {
-                    try {
-                        Object cachedResponse = objectMapper.readValue(cachedKey.get().getResponse(), Object.class);
-                        return ResponseEntity.status(HttpStatus.CREATED).body(cachedResponse);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                } else {
-                    idempotencyKeyRepository.delete(cachedKey.get());
-                }
+            claim = idempotencyStore.claim(merchant.getId(), idempotencyKeyHeader);
+            if (claim.isCompleted()) {
+                return ResponseEntity.status(claim.response().status())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(claim.response().body());
+            }
+            if (!claim.isAcquired()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", Map.of("code", "CONFLICT_ERROR",
+                        "description", "A request with this Idempotency-Key is still being processed")));
             }
         }
 
-        // 3. Process Payment
-        Payment payment = new Payment();
-        payment.setId("pay_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16));
-        payment.setMerchantId(merchant.getId());
-        payment.setOrderId(request.getOrderId()); // Set orderId from request
-        payment.setAmount(request.getAmount());
-        payment.setCurrency(request.getCurrency());
-        payment.setMethod(request.getMethod());
-        payment.setVpa(request.getVpa());
-        payment.setStatus("pending");
-        payment.setCreatedAt(LocalDateTime.now());
-
-        paymentRepository.save(payment);
-
-        // Emit payment.created webhook
-        createWebhookLog(merchantUuid, "payment.created", payment);
-
-        ProcessPaymentJob job = new ProcessPaymentJob(payment.getId());
-        redisTemplate.convertAndSend("queue:payments", job);
+        // 3. Process Payment: payment, payment.created webhook and processing job are written in one transaction
+        byte[] body;
+        try {
+            Payment payment = paymentService.createPayment(merchant, request);
+            body = objectMapper.writeValueAsBytes(payment);
+        } catch (Exception e) {
+            if (claim != null) {
+                idempotencyStore.release(claim);
+            }
+            throw e instanceof RuntimeException re ? re : new IllegalStateException("Failed to serialize payment", e);
+        }
 
-        // 4. SAVE IDEMPOTENCY KEY
-        if (idempotencyKeyHeader != null) {
+        // 4. Keep the exact bytes for retries with the same key
+        if (claim != null) {
             try {
-                IdempotencyKey newKey = new IdempotencyKey();
-                newKey.setKey(idempotencyKeyHeader);
-                newKey.setMerchantId(merchantUuid);
-                newKey.setResponse(objectMapper.writeValueAsString(payment));
-                newKey.setExpiresAt(LocalDateTime.now().plusHours(24));
-                idempotencyKeyRepository.save(newKey);
+                idempotencyStore.complete(claim, HttpStatus.CREATED.value(), body);
             } catch (Exception e) {
-                System.out.println(">>> Failed to save idempotency key: " + e.getMessage());
+                // The payment exists; a retry after the marker expires would create another one
+                System.err.println("Failed to store idempotent response: " + e.getMessage());
             }
         }
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(payment);
+        return ResponseEntity.status(HttpStatus.CREATED).contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     // --- REFUND ENDPOINT ---
     @PostMapping("/{paymentId}/refunds")
     public ResponseEntity<?> createRefund(
-            @RequestHeader("X-Api-Key") String apiKey,
+            @AuthenticatedMerchant Merchant merchant,
             @PathVariable String paymentId,
             @RequestBody Map<String, Object> request) {
 
-        // 1. Authenticate
-        Merchant merchant = merchantRepository.findAll().stream()
-                .filter(m -> m.getApiKey().equals(apiKey))
-                .findFirst()
-                .orElse(null);
-
-        if (merchant == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid API Key"));
-        }
-
+        // 1. Merchant is resolved by AuthenticationFilter
         // 2. Fetch Payment
         Optional<Payment> paymentOpt = paymentRepository.findById(paymentId);
         if (paymentOpt.isEmpty()) {
@@ -175,38 +127,23 @@ public class PaymentController {
         }
 
         // 4. Validate Amount
-        Integer requestAmount = (Integer) request.get("amount");
-        Integer alreadyRefunded = refundRepository.getRefundedAmount(paymentId);
-        if (alreadyRefunded == null) {
-            alreadyRefunded = 0;
+        BigInteger requestAmount = integralAmount(request.get("amount"));
+        if (requestAmount == null || requestAmount.signum() <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    Map.of("code", "BAD_REQUEST_ERROR", "description", "Refund amount must be a positive integer")));
         }
 
-        if (requestAmount + alreadyRefunded > payment.getAmount()) {
+        // 5. Admit against the payment's refunded total, then create Refund, refund.created webhook
+        // and processing job, all in one transaction. An amount too large for any payment is an over-refund too.
+        Optional<Refund> refund = requestAmount.bitLength() < Integer.SIZE
+                ? refundService.createRefund(merchant, paymentId, requestAmount.intValue(), (String) request.get("reason"))
+                : Optional.empty();
+        if (refund.isEmpty()) {
             return ResponseEntity.badRequest().body(Map.of("error",
                     Map.of("code", "BAD_REQUEST_ERROR", "description", "Refund amount exceeds available amount")));
         }
 
-        // 5. Create Refund
-        Refund refund = new Refund();
-        String refundId = "rfnd_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
-        refund.setId(refundId);
-        refund.setPaymentId(paymentId);
-        refund.setMerchantId(UUID.fromString(merchant.getId()));
-        refund.setAmount(requestAmount);
-        refund.setReason((String) request.get("reason"));
-        refund.setStatus("pending");
-        refund.setCreatedAt(LocalDateTime.now());
-
-        refundRepository.save(refund);
-
-        // Emit refund.created webhook
-        createWebhookLog(UUID.fromString(merchant.getId()), "refund.created", refund);
-
-        // 6. Enqueue Job
-        ProcessRefundJob job = new ProcessRefundJob(refundId);
-        redisTemplate.convertAndSend("queue:refunds", job);
-
-        return ResponseEntity.status(HttpStatus.CREATED).body(refund);
+        return ResponseEntity.status(HttpStatus.CREATED).body(refund.get());
     }
 
     @PostMapping("/public")
@@ -223,71 +160,89 @@ public class PaymentController {
 
     @PostMapping("/{id}/capture")
     public ResponseEntity<?> capturePayment(
-            @RequestHeader("X-Api-Key") String apiKey,
+            @AuthenticatedMerchant Merchant merchant,
             @PathVariable String id,
             @RequestBody Map<String, Object> payload) {
 
-        Merchant merchant = merchantRepository.findByApiKey(apiKey)
-                .orElseThrow(() -> new RuntimeException("Invalid API Key"));
+        // success -> captured in one conditional UPDATE; the read afterwards only explains a 0
+        int captured = paymentRepository.capture(id, merchant.getId());
 
         Payment payment = paymentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Payment not found"));
-
-        if (!payment.getMerchantId().equals(merchant.getId())) {
+                .filter(p -> merchant.getId().equals(p.getMerchantId()))
+                .orElse(null);
+        if (payment == null) {
             return ResponseEntity.status(404).body(Map.of("error",
                     Map.of("code", "NOT_FOUND_ERROR", "description", "Payment not found")));
         }
 
-        if (!"success".equals(payment.getStatus())) {
+        // Capturing an already captured payment is a no-op, as before
+        if (captured == 0 && !("success".equals(payment.getStatus()) && Boolean.TRUE.equals(payment.getCaptured()))) {
             return ResponseEntity.badRequest().body(Map.of("error",
                     Map.of("code", "BAD_REQUEST_ERROR", "description", "Payment is not in a capturable state")));
         }
 
-        payment.setCaptured(true);
-        paymentRepository.save(payment);
-
         return ResponseEntity.ok(payment);
     }
 
+    // Newest first, one page per request; pass next_cursor back to get the following page
     @GetMapping
-    public ResponseEntity<?> getAllPayments(@RequestHeader("X-Api-Key") String apiKey) {
-        Merchant merchant = merchantRepository.findAll().stream()
-                .filter(m -> m.getApiKey().equals(apiKey))
-                .findFirst()
-                .orElse(null);
+    public ResponseEntity<?> getAllPayments(
+            @AuthenticatedMerchant Merchant merchant,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String method,
+            @RequestParam(required = false) Boolean captured,
+            @RequestParam(name = "min_amount", required = false) Long minAmount,
+            @RequestParam(name = "max_amount", required = false) Long maxAmount,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(name = "order_id", required = false) String orderId) {
+
+        if (limit < 1 || limit > 100) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    Map.of("code", "BAD_REQUEST_ERROR", "description", "limit must be 1-100")));
+        }
 
-        if (merchant == null) {
-            return ResponseEntity.status(401).body(Map.of("error", "Invalid API Key"));
+        PaymentFilter filter;
+        KeysetCursor after;
+        try {
+            filter = new PaymentFilter(merchant.getId(), status, method, captured, minAmount, maxAmount,
+                    from != null ? LocalDateTime.parse(from) : null,
+                    to != null ? LocalDateTime.parse(to) : null,
+                    orderId);
+            after = cursor != null ? KeysetCursor.decode(cursor) : null;
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR",
+                    "description", "Invalid cursor or date (expected ISO-8601, e.g. 2024-01-31T00:00:00)")));
         }
 
-        List<Payment> payments = paymentService.getPaymentsForMerchant(merchant.getId());
-        return ResponseEntity.ok(payments);
+        // One row beyond the page tells whether there is a next one
+        List<Payment> rows = paymentService.listPayments(filter, after, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<Payment> page = hasMore ? rows.subList(0, limit) : rows;
+        Payment last = hasMore ? page.get(page.size() - 1) : null;
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("data", page);
+        response.put("limit", limit);
+        response.put("has_more", hasMore);
+        response.put("next_cursor", last != null ? new KeysetCursor(last.getCreatedAt(), last.getId()).encode() : null);
+        return ResponseEntity.ok(response);
     }
 
-    // Helper method to create webhook log and enqueue delivery
-    private void createWebhookLog(UUID merchantId, String event, Object data) {
-        try {
-            WebhookLog log = new WebhookLog();
-            log.setId(UUID.randomUUID());
-            log.setMerchantId(merchantId);
-            log.setEvent(event);
-
-            Map<String, Object> payloadMap = Map.of(
-                    "event", event,
-                    "timestamp", System.currentTimeMillis() / 1000,
-                    "data", data);
-            log.setPayload(objectMapper.writeValueAsString(payloadMap));
-            log.setStatus("pending");
-            log.setAttempts(0);
-            log.setCreatedAt(LocalDateTime.now());
-
-            webhookLogRepository.save(log);
-
-            DeliverWebhookJob webhookJob = new DeliverWebhookJob(log.getId().toString());
-            redisTemplate.convertAndSend("queue:webhooks", webhookJob);
-        } catch (Exception e) {
-            System.out.println("Failed to create webhook log: " + e.getMessage());
+    @GetMapping("/stats")
+    public ResponseEntity<?> getPaymentStats(@AuthenticatedMerchant Merchant merchant) {
+        return ResponseEntity.ok(paymentService.getStats(merchant.getId()));
+    }
+
+    // Jackson reads a JSON integer as Integer, Long or BigInteger depending on its size; anything else
+    // (a decimal, a string) is not an amount
+    private static BigInteger integralAmount(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return BigInteger.valueOf(((Number) value).longValue());
         }
+        return value instanceof BigInteger amount ? amount : null;
     }
 
 }
\ No newline at end of file
@@ -1,8 +1,8 @@
 package com.gateway.controllers;
 
+import com.gateway.config.AuthenticatedMerchant;
 import com.gateway.entities.Refund;
 import com.gateway.models.Merchant;
-import com.gateway.repositories.MerchantRepository;
 import com.gateway.repositories.RefundRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,28 +16,17 @@ import java.util.Optional;
 public class RefundController {
 
     private final RefundRepository refundRepository;
-    private final MerchantRepository merchantRepository;
 
-    public RefundController(RefundRepository refundRepository, MerchantRepository merchantRepository) {
+    public RefundController(RefundRepository refundRepository) {
         this.refundRepository = refundRepository;
-        this.merchantRepository = merchantRepository;
     }
 
     @GetMapping("/{refundId}")
     public ResponseEntity<?> getRefund(
-            @RequestHeader("X-Api-Key") String apiKey, 
+            @AuthenticatedMerchant Merchant merchant,
             @PathVariable String refundId) {
 
-        // 1. Authenticate
-        Merchant merchant = merchantRepository.findAll().stream()
-                .filter(m -> m.getApiKey().equals(apiKey))
-                .findFirst()
-                .orElse(null);
-
-        if (merchant == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid API Key"));
-        }
-
+        // 1. Merchant is resolved by AuthenticationFilter
         // 2. Fetch Refund
         Optional<Refund> refund = refundRepository.findById(refundId);
         if (refund.isEmpty()) {
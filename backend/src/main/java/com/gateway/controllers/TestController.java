@@ -1,8 +1,7 @@
 package com.gateway.controllers;
 
+import com.gateway.services.JobQueue;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.connection.RedisConnectionFactory;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -17,15 +16,15 @@ import java.util.Properties;
 public class TestController {
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private JobQueue jobQueue;
 
     @GetMapping("/jobs/status")
     public ResponseEntity<?> getJobStatus() {
         Map<String, Object> stats = new HashMap<>();
 
         try {
-            // Count pending jobs in the 'queue:payments' list
-            Long pendingCount = redisTemplate.opsForList().size("queue:payments");
+            // Count jobs in the 'queue:payments' stream that have not been acknowledged yet
+            Long pendingCount = jobQueue.size(JobQueue.PAYMENTS);
             
             // In a real system, you might track processing/completed/failed in Redis keys.
             // For this requirement, we can estimate or hardcode the others if we aren't tracking them explicitly yet.
@@ -34,7 +33,9 @@ public class TestController {
             stats.put("pending", pendingCount != null ? pendingCount : 0);
             stats.put("processing", 0); // Placeholder unless you track this in Redis
             stats.put("completed", 0);  // Placeholder or DB query count
-            stats.put("failed", 0);     // Placeholder or DB query count
+            // Jobs that failed on every delivery and were moved to the dead-letter stream
+            Long deadCount = jobQueue.deadSize(JobQueue.PAYMENTS);
+            stats.put("failed", deadCount != null ? deadCount : 0);
             stats.put("worker_status", "running"); // Assumed running if API can connect to Redis
 
             return ResponseEntity.ok(stats);
@@ -1,12 +1,27 @@
 package com.gateway.controllers;
 
+import com.gateway.config.AuthenticatedMerchant;
+import com.gateway.entities.WebhookAttempt;
 import com.gateway.entities.WebhookLog;
+import com.gateway.entities.WebhookSubscription;
+import com.gateway.jobs.DeliverWebhookJob;
 import com.gateway.models.Merchant;
-import com.gateway.repositories.MerchantRepository;
+import com.gateway.repositories.WebhookAttemptRepository;
+import com.gateway.repositories.WebhookLogFilter;
 import com.gateway.repositories.WebhookLogRepository;
+import com.gateway.services.IdGenerator;
+import com.gateway.services.JobQueue;
+import com.gateway.services.MerchantDirectory;
+import com.gateway.services.WebhookCircuitBreaker;
+import com.gateway.services.WebhookSubscriptions;
+import com.gateway.util.KeysetCursor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.List;
@@ -16,56 +31,257 @@ import java.util.List;
 public class WebhookController {
 
     private final WebhookLogRepository webhookLogRepository;
-    private final MerchantRepository merchantRepository;
+    private final WebhookAttemptRepository webhookAttemptRepository;
+    private final JobQueue jobQueue;
+    private final WebhookCircuitBreaker circuitBreaker;
+    private final MerchantDirectory merchantDirectory;
+    private final IdGenerator idGenerator;
+    private final WebhookSubscriptions webhookSubscriptions;
 
-    public WebhookController(WebhookLogRepository webhookLogRepository, MerchantRepository merchantRepository) {
+    @Value("${gateway.webhooks.secret-rotation-window-hours:24}")
+    private long rotationWindowHours;
+
+    public WebhookController(WebhookLogRepository webhookLogRepository,
+            WebhookAttemptRepository webhookAttemptRepository,
+            JobQueue jobQueue,
+            WebhookCircuitBreaker circuitBreaker,
+            MerchantDirectory merchantDirectory,
+            IdGenerator idGenerator,
+            WebhookSubscriptions webhookSubscriptions) {
         this.webhookLogRepository = webhookLogRepository;
-        this.merchantRepository = merchantRepository;
+        this.webhookAttemptRepository = webhookAttemptRepository;
+        this.jobQueue = jobQueue;
+        this.circuitBreaker = circuitBreaker;
+        this.merchantDirectory = merchantDirectory;
+        this.idGenerator = idGenerator;
+        this.webhookSubscriptions = webhookSubscriptions;
     }
 
+    // Newest first, one page per request. next_cursor (when has_more) fetches the following page;
+    // every page costs the same however far back it is. count=approximate uses the planner's
+    // estimate instead of counting, and count=none skips the total.
     @GetMapping
     public ResponseEntity<?> getLogs(
-            @RequestHeader("X-Api-Key") String apiKey,
+            @AuthenticatedMerchant Merchant merchant,
             @RequestParam(defaultValue = "10") int limit,
-            @RequestParam(defaultValue = "0") int offset) {
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String event,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "exact") String count) {
 
-        // 1. Authenticate
-        Merchant merchant = merchantRepository.findByApiKey(apiKey)
-                .orElseThrow(() -> new RuntimeException("Invalid API Key"));
+        if (limit < 1 || limit > 100 || !List.of("exact", "approximate", "none").contains(count)) {
+            return ResponseEntity.badRequest().body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR",
+                    "description", "limit must be 1-100 and count one of exact, approximate, none")));
+        }
 
-        // 2. Fetch All Logs for merchant
-        List<WebhookLog> allLogs = webhookLogRepository
-                .findByMerchantIdOrderByCreatedAtDesc(UUID.fromString(merchant.getId()));
-        int total = allLogs.size();
+        WebhookLogFilter filter;
+        LocalDateTime afterCreatedAt = null;
+        UUID afterId = null;
+        try {
+            filter = new WebhookLogFilter(UUID.fromString(merchant.getId()), event, status,
+                    from != null ? LocalDateTime.parse(from) : null,
+                    to != null ? LocalDateTime.parse(to) : null);
+            if (cursor != null) {
+                KeysetCursor after = KeysetCursor.decode(cursor);
+                afterCreatedAt = after.createdAt();
+                afterId = UUID.fromString(after.id());
+            }
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR",
+                    "description", "Invalid cursor or date (expected ISO-8601, e.g. 2024-01-31T00:00:00)")));
+        }
 
-        // 3. Apply Offset and Limit
-        int end = Math.min(offset + limit, total);
-        List<WebhookLog> pagedLogs = offset < total ? allLogs.subList(offset, end) : List.of();
+        // One row beyond the page tells whether there is a next one
+        List<WebhookLog> rows = webhookLogRepository.findPage(filter, afterCreatedAt, afterId, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<WebhookLog> page = hasMore ? rows.subList(0, limit) : rows;
 
-        return ResponseEntity.ok(Map.of(
-                "data", pagedLogs,
-                "total", total,
-                "limit", limit,
-                "offset", offset));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("data", page);
+        response.put("limit", limit);
+        response.put("has_more", hasMore);
+        WebhookLog last = hasMore ? page.get(page.size() - 1) : null;
+        response.put("next_cursor", last != null ? new KeysetCursor(last.getCreatedAt(), last.getId().toString()).encode() : null);
+        if (!"none".equals(count)) {
+            response.put("total", "exact".equals(count)
+                    ? webhookLogRepository.countExact(filter)
+                    : webhookLogRepository.countApproximate(filter));
+            response.put("total_is_estimate", "approximate".equals(count));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    // Delivery history of one webhook, one entry per attempt, oldest first.
+    // Attempts are written in batches, so the latest one can take a moment to appear.
+    @GetMapping("/{logId}/attempts")
+    public ResponseEntity<?> getAttempts(
+            @AuthenticatedMerchant Merchant merchant,
+            @PathVariable UUID logId) {
+
+        boolean owned = webhookLogRepository.findById(logId)
+                .filter(l -> l.getMerchantId().toString().equals(merchant.getId()))
+                .isPresent();
+        if (!owned) {
+            return ResponseEntity.status(404).body(Map.of("error",
+                    Map.of("code", "NOT_FOUND_ERROR", "description", "Webhook log not found")));
+        }
+
+        List<WebhookAttempt> attempts = webhookAttemptRepository.findByWebhookLogIdOrderByAttemptedAtAsc(logId);
+        return ResponseEntity.ok(Map.of("data", attempts, "total", attempts.size()));
     }
 
     @PostMapping("/{logId}/retry")
     public ResponseEntity<?> retryWebhook(
-            @RequestHeader("X-Api-Key") String apiKey,
+            @AuthenticatedMerchant Merchant merchant,
             @PathVariable UUID logId) {
 
-        // 1. Find the log
+        // 1. Find the log (only the owning merchant may retry it)
         WebhookLog log = webhookLogRepository.findById(logId)
-                .orElseThrow(() -> new RuntimeException("Log not found"));
+                .filter(l -> l.getMerchantId().toString().equals(merchant.getId()))
+                .orElse(null);
+        if (log == null) {
+            return ResponseEntity.status(404).body(Map.of("error",
+                    Map.of("code", "NOT_FOUND_ERROR", "description", "Webhook log not found")));
+        }
 
-        // 2. Reset status to trigger retry
-        log.setStatus("pending");
-        log.setAttempts(0);
-        webhookLogRepository.save(log);
+        // 2. Reset status to trigger retry; only the delivery columns are written, never the payload
+        webhookLogRepository.updateDeliveryState(log.getId(), log.getCreatedAt(), log.getStatus(), "pending", 0,
+                log.getResponseCode(), log.getLastAttemptAt(), LocalDateTime.now());
+
+        // 3. Due immediately; if a retry was already queued this just moves it forward
+        jobQueue.enqueueAfter(JobQueue.WEBHOOKS, new DeliverWebhookJob(log.getId().toString(), merchant.getId(),
+                log.getCreatedAt().toString()), Duration.ZERO);
 
         return ResponseEntity.ok(Map.of(
                 "id", log.getId().toString(),
                 "status", "pending",
                 "message", "Retry scheduled"));
     }
-}
\ No newline at end of file
+
+    // Delivery health of the merchant's endpoint: CLOSED (normal), OPEN (paused until retry_at) or HALF_OPEN (probing)
+    @GetMapping("/circuit")
+    public ResponseEntity<?> getCircuit(@AuthenticatedMerchant Merchant merchant) {
+        return ResponseEntity.ok(circuitBreaker.getSnapshot(merchant.getId()));
+    }
+
+    // Opt in to (or out of) batched delivery: up to batch_size events or window_ms per POST.
+    // A batch_size of null or 1 sends every event on its own.
+    @PutMapping("/batching")
+    public ResponseEntity<?> updateBatching(
+            @AuthenticatedMerchant Merchant merchant,
+            @RequestBody Map<String, Integer> request) {
+
+        Integer batchSize = request.get("batch_size");
+        Integer windowMs = request.get("window_ms");
+        if ((batchSize != null && (batchSize < 1 || batchSize > 1000))
+                || (windowMs != null && (windowMs < 10 || windowMs > 60000))) {
+            return ResponseEntity.badRequest().body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR",
+                    "description", "batch_size must be 1-1000 and window_ms 10-60000")));
+        }
+
+        merchantDirectory.update(merchant.getId(), m -> {
+            m.setWebhookBatchSize(batchSize);
+            m.setWebhookBatchWindowMs(windowMs);
+        });
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("batch_size", batchSize);
+        response.put("window_ms", windowMs);
+        return ResponseEntity.ok(response);
+    }
+
+    // New webhook secret; the old one keeps signing (X-Webhook-Signature-Previous) until the window ends
+    @PostMapping("/secret/rotate")
+    public ResponseEntity<?> rotateSecret(@AuthenticatedMerchant Merchant merchant) {
+        LocalDateTime previousExpiresAt = LocalDateTime.now().plusHours(rotationWindowHours);
+        // Rotates from the stored secret, not the cached one, so two rotations in a row both take effect
+        Merchant rotated = merchantDirectory.update(merchant.getId(), m -> {
+            m.setPreviousWebhookSecret(m.getWebhookSecret());
+            m.setPreviousWebhookSecretExpiresAt(m.getWebhookSecret() != null ? previousExpiresAt : null);
+            m.setWebhookSecret(idGenerator.generate("whsec_"));
+        }).orElseThrow();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("webhook_secret", rotated.getWebhookSecret());
+        response.put("previous_secret_expires_at", rotated.getPreviousWebhookSecretExpiresAt());
+        return ResponseEntity.ok(response);
+    }
+
+    // Per-merchant retry overrides; a null field falls back to the gateway default
+    @PutMapping("/retry-policy")
+    public ResponseEntity<?> updateRetryPolicy(
+            @AuthenticatedMerchant Merchant merchant,
+            @RequestBody Map<String, Integer> request) {
+
+        Integer maxAttempts = request.get("max_attempts");
+        Integer baseSeconds = request.get("base_seconds");
+        Integer maxDelaySeconds = request.get("max_delay_seconds");
+        if ((maxAttempts != null && (maxAttempts < 1 || maxAttempts > 20))
+                || (baseSeconds != null && (baseSeconds < 1 || baseSeconds > 86400))
+                || (maxDelaySeconds != null && (maxDelaySeconds < 1 || maxDelaySeconds > 86400))) {
+            return ResponseEntity.badRequest().body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR",
+                    "description", "max_attempts must be 1-20, base_seconds and max_delay_seconds 1-86400")));
+        }
+
+        merchantDirectory.update(merchant.getId(), m -> {
+            m.setWebhookRetryMaxAttempts(maxAttempts);
+            m.setWebhookRetryBaseSeconds(baseSeconds);
+            m.setWebhookRetryMaxDelaySeconds(maxDelaySeconds);
+        });
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("max_attempts", maxAttempts);
+        response.put("base_seconds", baseSeconds);
+        response.put("max_delay_seconds", maxDelaySeconds);
+        return ResponseEntity.ok(response);
+    }
+
+    // Opt in to (or out of) merging a payment's undelivered events into one delivery
+    @PutMapping("/coalescing")
+    public ResponseEntity<?> updateCoalescing(
+            @AuthenticatedMerchant Merchant merchant,
+            @RequestBody Map<String, Boolean> request) {
+
+        boolean enabled = Boolean.TRUE.equals(request.get("enabled"));
+        merchantDirectory.update(merchant.getId(), m -> m.setWebhookCoalesce(enabled));
+
+        return ResponseEntity.ok(Map.of("enabled", enabled));
+    }
+
+    // Endpoint and event filter. Unsubscribed events are dropped when they happen: no log, no delivery.
+    // An empty url turns webhooks off; events defaults to ["*"] (everything).
+    @PutMapping("/subscription")
+    public ResponseEntity<?> updateSubscription(
+            @AuthenticatedMerchant Merchant merchant,
+            @RequestBody Map<String, Object> request) {
+
+        Object url = request.get("url");
+        Object events = request.get("events") != null ? request.get("events") : List.of("*");
+        if ((url != null && !(url instanceof String))
+                || !(events instanceof List<?> eventList)
+                || eventList.stream().anyMatch(e -> !"*".equals(e) && !WebhookSubscriptions.EVENTS.contains(e))) {
+            return ResponseEntity.badRequest().body(Map.of("error", Map.of("code", "BAD_REQUEST_ERROR",
+                    "description", "url must be a string and events a list of " + WebhookSubscriptions.EVENTS + " or \"*\"")));
+        }
+
+        List<String> eventNames = eventList.stream().map(Object::toString).distinct().toList();
+        WebhookSubscription saved = webhookSubscriptions.save(merchant.getId(), (String) url, eventNames);
+        return ResponseEntity.ok(subscriptionResponse(saved.getUrl(), eventNames));
+    }
+
+    @GetMapping("/subscription")
+    public ResponseEntity<?> getSubscription(@AuthenticatedMerchant Merchant merchant) {
+        return ResponseEntity.ok(webhookSubscriptions.find(merchant.getId())
+                .map(s -> subscriptionResponse(s.getUrl(), List.of(s.getEvents().split(","))))
+                .orElseGet(() -> subscriptionResponse(merchant.getWebhookUrl(), List.of("*"))));
+    }
+
+    private static Map<String, Object> subscriptionResponse(String url, List<String> events) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("url", url);
+        response.put("events", events);
+        return response;
+    }
+}
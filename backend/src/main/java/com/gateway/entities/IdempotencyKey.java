@@ -1,41 +0,0 @@
-package com.gateway.entities;
-
-import jakarta.persistence.*;
-import java.time.LocalDateTime;
-import java.util.UUID;
-
-@Entity
-@Table(name = "idempotency_keys")
-@IdClass(IdempotencyKeyId.class)
-public class IdempotencyKey {
-
-    @Id
-    @Column(nullable = false)
-    private String key;
-
-    @Id
-    @Column(name = "merchant_id", nullable = false)
-    private UUID merchantId;
-
-    @Column(columnDefinition = "TEXT", nullable = false) // Postgres TEXT can hold JSON strings
-    private String response;
-
-    @Column(name = "created_at")
-    private LocalDateTime createdAt = LocalDateTime.now();
-
-    @Column(name = "expires_at", nullable = false)
-    private LocalDateTime expiresAt;
-
-    // Getters and Setters
-    public String getKey() { return key; }
-    public void setKey(String key) { this.key = key; }
-
-    public UUID getMerchantId() { return merchantId; }
-    public void setMerchantId(UUID merchantId) { this.merchantId = merchantId; }
-
-    public String getResponse() { return response; }
-    public void setResponse(String response) { this.response = response; }
-
-    public LocalDateTime getExpiresAt() { return expiresAt; }
-    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
-}
\ No newline at end of file
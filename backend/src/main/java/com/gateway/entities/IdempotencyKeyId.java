@@ -1,31 +0,0 @@
-package com.gateway.entities;
-
-import java.io.Serializable;
-import java.util.Objects;
-import java.util.UUID;
-
-public class IdempotencyKeyId implements Serializable {
-    private String key;
-    private UUID merchantId;
-
-    public IdempotencyKeyId() {}
-
-    public IdempotencyKeyId(String key, UUID merchantId) {
-        this.key = key;
-        this.merchantId = merchantId;
-    }
-
-    // Equals and HashCode are mandatory for Composite Keys
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        IdempotencyKeyId that = (IdempotencyKeyId) o;
-        return Objects.equals(key, that.key) && Objects.equals(merchantId, that.merchantId);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(key, merchantId);
-    }
-}
\ No newline at end of file
@@ -1,12 +1,18 @@
 package com.gateway.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
 @Table(name = "refunds")
-public class Refund {
+public class Refund implements Persistable<String> {
+
+    // Cleared once persisted or loaded (see Payment#isNew)
+    @Transient
+    private boolean isNew = true;
 
     @Id
     private String id;
@@ -57,4 +63,12 @@ public class Refund {
 
     public LocalDateTime getProcessedAt() { return processedAt; }
     public void setProcessedAt(LocalDateTime processedAt) { this.processedAt = processedAt; }
-}
\ No newline at end of file
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+}
@@ -0,0 +1,66 @@
+package com.gateway.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One row per delivery attempt; append-only, written in batches by WebhookAttemptRecorder
+@Entity
+@Table(name = "webhook_attempts", indexes = {
+        @Index(name = "idx_webhook_attempts_log", columnList = "webhook_log_id, attempted_at")
+})
+public class WebhookAttempt {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "webhook_log_id", nullable = false, columnDefinition = "uuid")
+    private UUID webhookLogId;
+
+    @Column(name = "merchant_id", nullable = false, columnDefinition = "uuid")
+    private UUID merchantId;
+
+    @Column(name = "attempt_number", nullable = false)
+    private Integer attemptNumber;
+
+    @Column(name = "attempted_at", nullable = false)
+    private LocalDateTime attemptedAt;
+
+    @Column(name = "latency_ms")
+    private Long latencyMs; // Null when the request never went out
+
+    @Column(name = "status_code")
+    private Integer statusCode; // Null on timeouts and connection errors
+
+    @Column(name = "response_body", length = 1000)
+    private String responseBody; // Truncated response body or error message
+
+    // Default Constructor
+    public WebhookAttempt() {}
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public UUID getWebhookLogId() { return webhookLogId; }
+    public void setWebhookLogId(UUID webhookLogId) { this.webhookLogId = webhookLogId; }
+
+    public UUID getMerchantId() { return merchantId; }
+    public void setMerchantId(UUID merchantId) { this.merchantId = merchantId; }
+
+    public Integer getAttemptNumber() { return attemptNumber; }
+    public void setAttemptNumber(Integer attemptNumber) { this.attemptNumber = attemptNumber; }
+
+    public LocalDateTime getAttemptedAt() { return attemptedAt; }
+    public void setAttemptedAt(LocalDateTime attemptedAt) { this.attemptedAt = attemptedAt; }
+
+    public Long getLatencyMs() { return latencyMs; }
+    public void setLatencyMs(Long latencyMs) { this.latencyMs = latencyMs; }
+
+    public Integer getStatusCode() { return statusCode; }
+    public void setStatusCode(Integer statusCode) { this.statusCode = statusCode; }
+
+    public String getResponseBody() { return responseBody; }
+    public void setResponseBody(String responseBody) { this.responseBody = responseBody; }
+}
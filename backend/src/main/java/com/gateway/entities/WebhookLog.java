@@ -1,12 +1,20 @@
 package com.gateway.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "webhook_logs")
-public class WebhookLog {
+@Table(name = "webhook_logs", indexes = {
+        @Index(name = "idx_webhook_logs_resource", columnList = "merchant_id, resource_id, status")
+})
+public class WebhookLog implements Persistable<UUID> {
+
+    // Cleared once persisted or loaded (see Payment#isNew)
+    @Transient
+    private boolean isNew = true;
 
     @Id
     @Column(columnDefinition = "uuid")
@@ -18,11 +26,19 @@ public class WebhookLog {
     @Column(nullable = false)
     private String event;
 
+    // Payment the event is about (refund events carry their payment's id)
+    @Column(name = "resource_id")
+    private String resourceId;
+
     @Column(columnDefinition = "TEXT", nullable = false)
     private String payload;
 
     @Column(nullable = false)
-    private String status = "pending"; // pending, success, failed
+    private String status = "pending"; // pending, success, failed, coalesced
+
+    // Set when this event was merged into another log's delivery (status coalesced)
+    @Column(name = "coalesced_into", columnDefinition = "uuid")
+    private UUID coalescedInto;
 
     @Column(nullable = false)
     private Integer attempts = 0;
@@ -39,7 +55,7 @@ public class WebhookLog {
     @Column(name = "response_body", columnDefinition = "TEXT")
     private String responseBody;
 
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false) // Partition key (see WebhookLogPartitions)
     private LocalDateTime createdAt = LocalDateTime.now();
 
     // Default Constructor
@@ -55,6 +71,12 @@ public class WebhookLog {
     public String getEvent() { return event; }
     public void setEvent(String event) { this.event = event; }
 
+    public String getResourceId() { return resourceId; }
+    public void setResourceId(String resourceId) { this.resourceId = resourceId; }
+
+    public UUID getCoalescedInto() { return coalescedInto; }
+    public void setCoalescedInto(UUID coalescedInto) { this.coalescedInto = coalescedInto; }
+
     public String getPayload() { return payload; }
     public void setPayload(String payload) { this.payload = payload; }
 
@@ -78,4 +100,12 @@ public class WebhookLog {
 
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
-}
\ No newline at end of file
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+}
@@ -0,0 +1,39 @@
+package com.gateway.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// A merchant's webhook endpoint and the events it wants; no row means every event goes to merchants.webhook_url
+@Entity
+@Table(name = "webhook_subscriptions")
+public class WebhookSubscription {
+
+    @Id
+    @Column(name = "merchant_id", nullable = false)
+    private String merchantId;
+
+    @Column(name = "url", columnDefinition = "TEXT")
+    private String url; // Null or empty: subscribed to nothing
+
+    @Column(name = "events", nullable = false, columnDefinition = "TEXT")
+    private String events = "*"; // Comma-separated event names, or * for all
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Default Constructor
+    public WebhookSubscription() {}
+
+    // Getters and Setters
+    public String getMerchantId() { return merchantId; }
+    public void setMerchantId(String merchantId) { this.merchantId = merchantId; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public String getEvents() { return events; }
+    public void setEvents(String events) { this.events = events; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -4,14 +4,27 @@ import java.io.Serializable;
 
 public class DeliverWebhookJob implements Serializable {
     private String webhookLogId; // We track the log ID to manage retries
+    private String merchantId; // Lets deliveries be scheduled per merchant without loading the log
+    private String createdAt; // The log's partition key, so its lookups and updates touch one partition
 
     public DeliverWebhookJob() {}
 
-    public DeliverWebhookJob(String webhookLogId) {
+    public DeliverWebhookJob(String webhookLogId, String merchantId, String createdAt) {
         this.webhookLogId = webhookLogId;
+        this.merchantId = merchantId;
+        this.createdAt = createdAt;
     }
 
     public String getWebhookLogId() {
         return webhookLogId;
     }
-}
\ No newline at end of file
+
+    public String getMerchantId() {
+        return merchantId;
+    }
+
+    // Null on jobs queued before it was carried
+    public String getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -46,6 +46,34 @@ public class Merchant {
 
     @Column(name = "webhook_secret")
     private String webhookSecret;
+
+    // Set while a rotated-out secret is still honoured: deliveries are signed with both until it expires
+    @Column(name = "previous_webhook_secret")
+    private String previousWebhookSecret;
+
+    @Column(name = "previous_webhook_secret_expires_at")
+    private LocalDateTime previousWebhookSecretExpiresAt;
+
+    // Batched webhook delivery (opt-in): null or 1 sends each event on its own
+    @Column(name = "webhook_batch_size")
+    private Integer webhookBatchSize;
+
+    @Column(name = "webhook_batch_window_ms")
+    private Integer webhookBatchWindowMs;
+
+    // Opt-in: undelivered events for the same payment go out as one delivery
+    @Column(name = "webhook_coalesce")
+    private Boolean webhookCoalesce;
+
+    // Per-merchant webhook retry overrides; null uses the gateway default
+    @Column(name = "webhook_retry_max_attempts")
+    private Integer webhookRetryMaxAttempts;
+
+    @Column(name = "webhook_retry_base_seconds")
+    private Integer webhookRetryBaseSeconds;
+
+    @Column(name = "webhook_retry_max_delay_seconds")
+    private Integer webhookRetryMaxDelaySeconds;
     
     public String getPassword() { return password; }
     public void setPassword(String password) { this.password = password; }
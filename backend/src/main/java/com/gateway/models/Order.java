@@ -1,11 +1,17 @@
 package com.gateway.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "orders")
-public class Order {
+public class Order implements Persistable<String> {
+
+    // Cleared once persisted or loaded, so save() of a new order inserts without a SELECT first
+    @Transient
+    private boolean isNew = true;
 
     @Id
     private String id; // Changed to String
@@ -39,4 +45,12 @@ public class Order {
 
     public String getMerchantId() { return merchantId; }
     public void setMerchantId(String merchantId) { this.merchantId = merchantId; }
-}
\ No newline at end of file
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+}
@@ -1,11 +1,23 @@
 package com.gateway.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments")
-public class Payment {
+@Table(name = "payments", indexes = {
+        // Newest-first keyset pages, unfiltered and by status; stats read amounts from the status index
+        @Index(name = "idx_payments_merchant_created", columnList = "merchant_id, created_at, id"),
+        @Index(name = "idx_payments_merchant_status", columnList = "merchant_id, status, created_at, id, amount"),
+        @Index(name = "idx_payments_order", columnList = "order_id")
+})
+public class Payment implements Persistable<String> {
+
+    // Ids are assigned by the application, so Spring Data cannot tell a new row from its id;
+    // without this flag every save() of a new entity would SELECT it first (merge) before inserting
+    @Transient
+    private boolean isNew = true;
 
     @Id
     private String id; // Changed to String
@@ -20,6 +32,11 @@ public class Payment {
     private Boolean captured = false;
 
     private Long amount;
+
+    // Sum of refunds admitted so far. Only PaymentRepository#reserveRefund writes it; saving a
+    // (possibly stale) Payment never does
+    @Column(name = "amount_refunded", nullable = false, updatable = false, columnDefinition = "bigint default 0 not null")
+    private Long amountRefunded = 0L;
     private String currency;
     private String status;
     private String method;
@@ -67,6 +84,14 @@ public class Payment {
         this.amount = amount;
     }
 
+    public Long getAmountRefunded() {
+        return amountRefunded;
+    }
+
+    public void setAmountRefunded(Long amountRefunded) {
+        this.amountRefunded = amountRefunded;
+    }
+
     public String getCurrency() {
         return currency;
     }
@@ -130,4 +155,16 @@ public class Payment {
     public void setErrorDescription(String errorDescription) {
         this.errorDescription = errorDescription;
     }
-}
\ No newline at end of file
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
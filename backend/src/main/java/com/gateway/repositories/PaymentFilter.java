@@ -0,0 +1,11 @@
+package com.gateway.repositories;
+
+import java.time.LocalDateTime;
+
+/**
+ * Criteria for listing one merchant's payments. Null fields are not filtered on; amounts are
+ * inclusive, from is inclusive and to exclusive.
+ */
+public record PaymentFilter(String merchantId, String status, String method, Boolean captured,
+        Long minAmount, Long maxAmount, LocalDateTime from, LocalDateTime to, String orderId) {
+}
@@ -2,9 +2,43 @@ package com.gateway.repositories;
 
 import com.gateway.models.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
-public interface PaymentRepository extends JpaRepository<Payment, String> {
-    List<Payment> findByMerchantId(String merchantId);
+public interface PaymentRepository extends JpaRepository<Payment, String>, PaymentRepositoryCustom {
     List<Payment> findByOrderId(String orderId);
-}
\ No newline at end of file
+
+    // Payment state machine: pending -> success | failed, then success -> captured (the captured flag).
+    // Each transition is one UPDATE guarded by the expected current state, so when workers or requests
+    // race only one of them changes the row; the others get 0 and back off. No locks are held in between.
+
+    // 0 if the payment is no longer in fromStatus. Detaches loaded entities, so a stale copy cannot be flushed over it.
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = :toStatus, p.errorCode = :errorCode, p.errorDescription = :errorDescription "
+            + "WHERE p.id = :paymentId AND p.status = :fromStatus")
+    int transition(String paymentId, String fromStatus, String toStatus, String errorCode, String errorDescription);
+
+    // 0 if the payment is not the merchant's, not successful, or already captured
+    @Transactional
+    @Modifying
+    @Query("UPDATE Payment p SET p.captured = true "
+            + "WHERE p.id = :paymentId AND p.merchantId = :merchantId AND p.status = 'success' AND p.captured = false")
+    int capture(String paymentId, String merchantId);
+
+    // Admits a refund only if it fits in what is left of the payment. The row lock taken by the
+    // UPDATE serializes concurrent refunds, so together they can never exceed the amount.
+    // Returns 0 when the refund does not fit (or the payment does not exist).
+    @Transactional(propagation = Propagation.MANDATORY) // Rolls back with the refund insert
+    @Modifying
+    @Query(value = "UPDATE payments SET amount_refunded = amount_refunded + :amount "
+            + "WHERE id = :paymentId AND amount_refunded + :amount <= amount", nativeQuery = true)
+    int reserveRefund(String paymentId, long amount);
+
+    // Count and amount per status in one pass over idx_payments_merchant_status (index-only scan)
+    @Query("SELECT p.status, COUNT(p), COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.merchantId = :merchantId GROUP BY p.status")
+    List<Object[]> summarizeByStatus(String merchantId);
+}
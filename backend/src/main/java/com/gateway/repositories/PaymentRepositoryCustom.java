@@ -0,0 +1,12 @@
+package com.gateway.repositories;
+
+import com.gateway.models.Payment;
+import com.gateway.util.KeysetCursor;
+
+import java.util.List;
+
+public interface PaymentRepositoryCustom {
+
+    // Newest first, strictly after the cursor when one is given (keyset pagination)
+    List<Payment> findPage(PaymentFilter filter, KeysetCursor after, int limit);
+}
@@ -0,0 +1,71 @@
+package com.gateway.repositories;
+
+import com.gateway.models.Payment;
+import com.gateway.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Payment listing pushed down to SQL. Pages walk idx_payments_merchant_created (or the status
+ * index when filtering by status) from the cursor, so their cost does not grow with the history.
+ */
+public class PaymentRepositoryImpl implements PaymentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Payment> findPage(PaymentFilter filter, KeysetCursor after, int limit) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Payment p WHERE p.merchantId = :merchantId");
+        params.put("merchantId", filter.merchantId());
+
+        if (filter.status() != null) {
+            jpql.append(" AND p.status = :status");
+            params.put("status", filter.status());
+        }
+        if (filter.method() != null) {
+            jpql.append(" AND p.method = :method");
+            params.put("method", filter.method());
+        }
+        if (filter.captured() != null) {
+            jpql.append(" AND p.captured = :captured");
+            params.put("captured", filter.captured());
+        }
+        if (filter.minAmount() != null) {
+            jpql.append(" AND p.amount >= :minAmount");
+            params.put("minAmount", filter.minAmount());
+        }
+        if (filter.maxAmount() != null) {
+            jpql.append(" AND p.amount <= :maxAmount");
+            params.put("maxAmount", filter.maxAmount());
+        }
+        if (filter.from() != null) {
+            jpql.append(" AND p.createdAt >= :from");
+            params.put("from", filter.from());
+        }
+        if (filter.to() != null) {
+            jpql.append(" AND p.createdAt < :to");
+            params.put("to", filter.to());
+        }
+        if (filter.orderId() != null) {
+            jpql.append(" AND p.orderId = :orderId");
+            params.put("orderId", filter.orderId());
+        }
+        if (after != null) {
+            jpql.append(" AND (p.createdAt < :afterCreatedAt OR (p.createdAt = :afterCreatedAt AND p.id < :afterId))");
+            params.put("afterCreatedAt", after.createdAt());
+            params.put("afterId", after.id());
+        }
+        jpql.append(" ORDER BY p.createdAt DESC, p.id DESC");
+
+        TypedQuery<Payment> query = entityManager.createQuery(jpql.toString(), Payment.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
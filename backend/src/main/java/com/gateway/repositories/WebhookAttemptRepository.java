@@ -0,0 +1,13 @@
+package com.gateway.repositories;
+
+import com.gateway.entities.WebhookAttempt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface WebhookAttemptRepository extends JpaRepository<WebhookAttempt, Long> {
+    List<WebhookAttempt> findByWebhookLogIdOrderByAttemptedAtAsc(UUID webhookLogId);
+}
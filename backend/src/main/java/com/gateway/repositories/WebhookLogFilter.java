@@ -0,0 +1,11 @@
+package com.gateway.repositories;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Criteria for listing one merchant's webhook logs. Null fields are not filtered on;
+ * from is inclusive and to exclusive.
+ */
+public record WebhookLogFilter(UUID merchantId, String event, String status, LocalDateTime from, LocalDateTime to) {
+}
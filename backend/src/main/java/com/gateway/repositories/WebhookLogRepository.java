@@ -1,18 +1,63 @@
 package com.gateway.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.gateway.entities.WebhookLog;
 
-import java.util.ArrayList;
+import java.time.LocalDateTime;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.List;
-import java.time.LocalDateTime;
 
 @Repository
-public interface WebhookLogRepository extends JpaRepository<WebhookLog, UUID> {
-    ArrayList<WebhookLog> findByMerchantIdOrderByCreatedAtDesc(UUID merchantId);
+public interface WebhookLogRepository extends JpaRepository<WebhookLog, UUID>, WebhookLogRepositoryCustom {
+    // Ids and due times only (no payloads), used to seed the Redis retry queue on startup
+    @Query("SELECT l.id, l.merchantId, l.createdAt, l.nextRetryAt FROM WebhookLog l WHERE l.status = 'pending' "
+            + "AND l.nextRetryAt IS NOT NULL AND l.createdAt >= :since")
+    List<Object[]> findScheduledRetries(LocalDateTime since);
+
+    // The primary key is (id, created_at): with both, the lookup is an index probe in one partition
+    Optional<WebhookLog> findByIdAndCreatedAt(UUID id, LocalDateTime createdAt);
+
+    // Undelivered events for one payment, oldest first. Partitions older than :since are skipped
+    @Query("SELECT l FROM WebhookLog l WHERE l.merchantId = :merchantId AND l.resourceId = :resourceId "
+            + "AND l.status = 'pending' AND l.createdAt >= :since ORDER BY l.createdAt, l.id")
+    List<WebhookLog> findPendingForResource(UUID merchantId, String resourceId, LocalDateTime since);
+
+    // Whether an older event for the same payment is still undelivered (events go out in creation order),
+    // looking no further back than :since
+    @Query("SELECT COUNT(l) > 0 FROM WebhookLog l WHERE l.merchantId = :merchantId AND l.resourceId = :resourceId "
+            + "AND l.status = 'pending' AND l.createdAt >= :since "
+            + "AND (l.createdAt < :createdAt OR (l.createdAt = :createdAt AND l.id < :id))")
+    boolean hasEarlierPending(UUID merchantId, String resourceId, LocalDateTime createdAt, UUID id, LocalDateTime since);
+
+    // The oldest undelivered event for a payment created at or after :createdAt
+    Optional<WebhookLog> findFirstByMerchantIdAndResourceIdAndStatusAndCreatedAtGreaterThanEqualOrderByCreatedAtAscIdAsc(
+            UUID merchantId, String resourceId, String status, LocalDateTime createdAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookLog l SET l.nextRetryAt = :nextRetryAt WHERE l.id = :id AND l.createdAt = :createdAt")
+    int updateNextRetryAt(UUID id, LocalDateTime createdAt, LocalDateTime nextRetryAt);
+
+    // The merged payload for a log that is still pending; 0 if it was merged into another meanwhile
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookLog l SET l.payload = :payload "
+            + "WHERE l.id = :id AND l.createdAt = :createdAt AND l.status = 'pending'")
+    int updatePendingPayload(UUID id, LocalDateTime createdAt, String payload);
 
-    List<WebhookLog> findByStatusAndNextRetryAtLessThanEqual(String status, LocalDateTime timestamp);
-}
\ No newline at end of file
+    // Narrow per-attempt write: leaves payload and response_body untouched. Only applies while the
+    // log is still in expectedStatus (0 rows if, say, it was coalesced into another delivery meanwhile)
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookLog l SET l.status = :status, l.attempts = :attempts, l.responseCode = :responseCode, "
+            + "l.lastAttemptAt = :lastAttemptAt, l.nextRetryAt = :nextRetryAt "
+            + "WHERE l.id = :id AND l.createdAt = :createdAt AND l.status = :expectedStatus")
+    int updateDeliveryState(UUID id, LocalDateTime createdAt, String expectedStatus, String status, Integer attempts,
+            Integer responseCode, LocalDateTime lastAttemptAt, LocalDateTime nextRetryAt);
+}
@@ -0,0 +1,21 @@
+package com.gateway.repositories;
+
+import com.gateway.entities.WebhookLog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface WebhookLogRepositoryCustom {
+
+    // Newest first, strictly after the (afterCreatedAt, afterId) position when one is given (keyset pagination)
+    List<WebhookLog> findPage(WebhookLogFilter filter, LocalDateTime afterCreatedAt, UUID afterId, int limit);
+
+    long countExact(WebhookLogFilter filter);
+
+    // The planner's row estimate: constant cost, but can be off by a wide margin
+    long countApproximate(WebhookLogFilter filter);
+
+    // Marks the logs that are still pending as merged into another; returns the ids it changed
+    List<UUID> markCoalesced(List<UUID> ids, UUID coalescedInto, LocalDateTime since);
+}
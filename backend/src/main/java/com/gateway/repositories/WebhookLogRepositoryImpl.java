@@ -0,0 +1,130 @@
+package com.gateway.repositories;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.entities.WebhookLog;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Webhook log listing pushed down to SQL: every page is one index range scan on
+ * (merchant_id, created_at, id), however deep into the history it is. Also the coalescing
+ * update, which needs PostgreSQL's RETURNING.
+ */
+public class WebhookLogRepositoryImpl implements WebhookLogRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public WebhookLogRepositoryImpl(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public List<WebhookLog> findPage(WebhookLogFilter filter, LocalDateTime afterCreatedAt, UUID afterId, int limit) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder jpql = new StringBuilder("SELECT l FROM WebhookLog l WHERE ").append(where(filter, params));
+        if (afterCreatedAt != null) {
+            jpql.append(" AND (l.createdAt < :afterCreatedAt OR (l.createdAt = :afterCreatedAt AND l.id < :afterId))");
+            params.put("afterCreatedAt", afterCreatedAt);
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY l.createdAt DESC, l.id DESC");
+
+        TypedQuery<WebhookLog> query = entityManager.createQuery(jpql.toString(), WebhookLog.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long countExact(WebhookLogFilter filter) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        TypedQuery<Long> query = entityManager.createQuery(
+                "SELECT COUNT(l) FROM WebhookLog l WHERE " + where(filter, params), Long.class);
+        params.forEach(query::setParameter);
+        return query.getSingleResult();
+    }
+
+    @Override
+    public long countApproximate(WebhookLogFilter filter) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("EXPLAIN (FORMAT JSON) SELECT 1 FROM webhook_logs WHERE merchant_id = ?");
+        args.add(filter.merchantId());
+        if (filter.event() != null) {
+            sql.append(" AND event = ?");
+            args.add(filter.event());
+        }
+        if (filter.status() != null) {
+            sql.append(" AND status = ?");
+            args.add(filter.status());
+        }
+        if (filter.from() != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(filter.to()));
+        }
+
+        String plan = jdbcTemplate.queryForObject(sql.toString(), String.class, args.toArray());
+        try {
+            JsonNode root = objectMapper.readTree(plan);
+            return root.path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable query plan for webhook log count", e);
+        }
+    }
+
+    @Override
+    public List<UUID> markCoalesced(List<UUID> ids, UUID coalescedInto, LocalDateTime since) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Object> args = new ArrayList<>();
+        args.add(coalescedInto);
+        args.addAll(ids);
+        args.add(Timestamp.valueOf(since));
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return jdbcTemplate.queryForList("UPDATE webhook_logs SET status = 'coalesced', coalesced_into = ?, "
+                + "next_retry_at = NULL WHERE id IN (" + placeholders + ") AND created_at >= ? "
+                + "AND status = 'pending' RETURNING id", UUID.class, args.toArray());
+    }
+
+    private static String where(WebhookLogFilter filter, Map<String, Object> params) {
+        StringBuilder where = new StringBuilder("l.merchantId = :merchantId");
+        params.put("merchantId", filter.merchantId());
+        if (filter.event() != null) {
+            where.append(" AND l.event = :event");
+            params.put("event", filter.event());
+        }
+        if (filter.status() != null) {
+            where.append(" AND l.status = :status");
+            params.put("status", filter.status());
+        }
+        if (filter.from() != null) {
+            where.append(" AND l.createdAt >= :from");
+            params.put("from", filter.from());
+        }
+        if (filter.to() != null) {
+            where.append(" AND l.createdAt < :to");
+            params.put("to", filter.to());
+        }
+        return where.toString();
+    }
+}
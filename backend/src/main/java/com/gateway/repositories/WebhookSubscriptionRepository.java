@@ -0,0 +1,9 @@
+package com.gateway.repositories;
+
+import com.gateway.entities.WebhookSubscription;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WebhookSubscriptionRepository extends JpaRepository<WebhookSubscription, String> {
+}
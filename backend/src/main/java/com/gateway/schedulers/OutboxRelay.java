@@ -0,0 +1,57 @@
+package com.gateway.schedulers;
+
+import com.gateway.entities.OutboxEvent;
+import com.gateway.repositories.OutboxEventRepository;
+import com.gateway.services.JobQueue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+@Component
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final JobQueue jobQueue;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${gateway.outbox.batch-size:500}")
+    private int batchSize;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+            JobQueue jobQueue,
+            TransactionTemplate transactionTemplate) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.jobQueue = jobQueue;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.outbox.relay-interval-ms:200}")
+    public void relay() {
+        try {
+            // Keep draining while full batches come back
+            Integer published;
+            do {
+                published = transactionTemplate.execute(status -> publishBatch());
+            } while (published != null && published == batchSize);
+        } catch (Exception e) {
+            // The batch's rows are still in the outbox and go out on the next run
+            System.err.println("Outbox relay failed: " + e.getMessage());
+        }
+    }
+
+    private int publishBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // Publish first, then delete: a crash in between re-publishes (at-least-once),
+        // which the workers tolerate by skipping jobs that are no longer pending
+        jobQueue.enqueueAll(batch);
+        outboxEventRepository.deleteAllInBatch(batch);
+        return batch.size();
+    }
+}
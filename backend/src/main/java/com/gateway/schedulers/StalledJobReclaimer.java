@@ -0,0 +1,57 @@
+package com.gateway.schedulers;
+
+import com.gateway.services.JobQueue;
+import com.gateway.workers.JobQueueListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+public class StalledJobReclaimer {
+
+    private final JobQueue jobQueue;
+    private final JobQueueListener jobQueueListener;
+
+    @Value("${gateway.queue.reclaim-idle-ms:60000}")
+    private long reclaimIdleMs;
+
+    @Value("${gateway.queue.reclaim-batch-size:100}")
+    private int reclaimBatchSize;
+
+    // Deliveries (the first read plus each reclaim) before a job is moved to its queue's dead-letter stream
+    @Value("${gateway.queue.max-deliveries:5}")
+    private int maxDeliveries;
+
+    public StalledJobReclaimer(JobQueue jobQueue, JobQueueListener jobQueueListener) {
+        this.jobQueue = jobQueue;
+        this.jobQueueListener = jobQueueListener;
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.queue.reclaim-interval-ms:30000}")
+    public void reclaimStalledJobs() {
+        for (String queue : JobQueue.QUEUES) {
+            List<MapRecord<String, String, String>> stalled;
+            try {
+                // Jobs read by a consumer that never acknowledged them (the node died mid-job, or the job failed)
+                stalled = jobQueue.reclaim(queue, Duration.ofMillis(reclaimIdleMs), reclaimBatchSize, maxDeliveries);
+            } catch (Exception e) {
+                System.err.println("Failed to reclaim jobs from " + queue + ": " + e.getMessage());
+                continue;
+            }
+
+            for (MapRecord<String, String, String> record : stalled) {
+                // One bad record must not hold up the rest; it stays pending and comes round again
+                try {
+                    System.out.println("Reclaimed stalled job " + record.getId() + " from " + queue);
+                    jobQueueListener.onMessage(record);
+                } catch (Exception e) {
+                    System.err.println("Failed to requeue reclaimed job " + record.getId() + " from " + queue + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.gateway.schedulers;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps webhook_logs range-partitioned by month on created_at.
+ *
+ * Hibernate (ddl-auto=update) only knows plain tables, so on startup a plain webhook_logs is
+ * converted: the old table becomes the partition webhook_logs_legacy holding everything up to
+ * the end of the current month. Monthly partitions are created ahead of time, and partitions
+ * that ended before the retention cutoff are detached and dropped, or moved to the
+ * webhook_archive schema when archiving is on.
+ */
+@Component
+@DependsOn("entityManagerFactory") // Runs after Hibernate has created or updated the schema
+public class WebhookLogPartitions {
+
+    private static final String TABLE = "webhook_logs";
+    private static final String LEGACY = "webhook_logs_legacy";
+    private static final String ARCHIVE_SCHEMA = "webhook_archive";
+    private static final long LOCK_KEY = 0x77686c70L; // Serializes maintenance across nodes
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${gateway.webhooks.partitions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.webhooks.partitions.months-ahead:2}")
+    private int monthsAhead;
+
+    @Value("${gateway.webhooks.partitions.retention-months:6}")
+    private int retentionMonths;
+
+    @Value("${gateway.webhooks.partitions.archive:false}")
+    private boolean archive;
+
+    public WebhookLogPartitions(JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled)
+            return;
+        transactionTemplate.executeWithoutResult(status -> {
+            lock();
+            if (isPlainTable()) {
+                convertToPartitioned();
+            }
+            // Keyset pagination of a merchant's logs (newest first)
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_webhook_logs_merchant_created ON " + TABLE
+                    + " (merchant_id, created_at DESC, id DESC)");
+            createUpcoming();
+        });
+    }
+
+    @Scheduled(cron = "${gateway.webhooks.partitions.maintenance-cron:0 15 3 * * *}")
+    public void maintain() {
+        if (!enabled)
+            return;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lock();
+                createUpcoming();
+                expire();
+            });
+        } catch (Exception e) {
+            // Nothing is lost: the next run creates and expires whatever this one did not
+            System.err.println("Webhook log partition maintenance failed: " + e.getMessage());
+        }
+    }
+
+    private void lock() {
+        jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, LOCK_KEY);
+    }
+
+    private boolean isPlainTable() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT c.relkind::text FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE c.relname = ? AND n.nspname = current_schema()", String.class, TABLE);
+        return kinds.contains("r");
+    }
+
+    // One-off: swap the plain table for a partitioned one and attach the old rows as its first partition
+    private void convertToPartitioned() {
+        LocalDate legacyEnd = YearMonth.now().plusMonths(1).atDay(1);
+        System.out.println("Converting " + TABLE + " to monthly partitions (existing rows kept in " + LEGACY + ")");
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY);
+        // Index names are schema-wide, so the old ones make way for the parent's
+        jdbcTemplate.execute("ALTER TABLE " + LEGACY + " RENAME CONSTRAINT webhook_logs_pkey TO webhook_logs_legacy_pkey");
+        jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_webhook_logs_resource RENAME TO idx_webhook_logs_legacy_resource");
+        jdbcTemplate.execute("UPDATE " + LEGACY + " SET created_at = TIMESTAMP '1970-01-01' WHERE created_at IS NULL");
+        jdbcTemplate.execute("ALTER TABLE " + LEGACY + " ALTER COLUMN created_at SET NOT NULL");
+
+        // The partition key has to be part of the primary key
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY + " INCLUDING DEFAULTS) PARTITION BY RANGE (created_at)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, created_at)");
+        jdbcTemplate.execute("CREATE INDEX idx_webhook_logs_resource ON " + TABLE + " (merchant_id, resource_id, status)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY
+                + " FOR VALUES FROM (MINVALUE) TO ('" + legacyEnd + "')");
+    }
+
+    private void createUpcoming() {
+        // The legacy partition already covers the month the table was converted in
+        YearMonth first = YearMonth.now();
+        LocalDateTime legacyEnd = upperBounds().get(LEGACY);
+        if (legacyEnd != null && YearMonth.from(legacyEnd).isAfter(first)) {
+            first = YearMonth.from(legacyEnd);
+        }
+        for (YearMonth month = first; !month.isAfter(YearMonth.now().plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + "_p" + month.format(SUFFIX)
+                    + " PARTITION OF " + TABLE + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('"
+                    + month.plusMonths(1).atDay(1) + "')");
+        }
+    }
+
+    private void expire() {
+        LocalDateTime cutoff = YearMonth.now().minusMonths(retentionMonths).atDay(1).atStartOfDay();
+        if (archive) {
+            jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + ARCHIVE_SCHEMA);
+        }
+        for (Map.Entry<String, LocalDateTime> partition : upperBounds().entrySet()) {
+            if (partition.getValue().isAfter(cutoff))
+                continue;
+            String name = partition.getKey();
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+            if (archive) {
+                jdbcTemplate.execute("ALTER TABLE " + name + " SET SCHEMA " + ARCHIVE_SCHEMA);
+                System.out.println("Archived webhook log partition " + name + " to " + ARCHIVE_SCHEMA);
+            } else {
+                jdbcTemplate.execute("DROP TABLE " + name);
+                System.out.println("Dropped webhook log partition " + name);
+            }
+        }
+
+        // Attempt history is not partitioned; it goes with the logs it belongs to
+        int deleted = jdbcTemplate.update("DELETE FROM webhook_attempts WHERE attempted_at < ?", Timestamp.valueOf(cutoff));
+        if (deleted > 0) {
+            System.out.println("Deleted " + deleted + " expired webhook attempts");
+        }
+    }
+
+    // Partition name -> exclusive upper bound of its created_at range
+    private Map<String, LocalDateTime> upperBounds() {
+        Map<String, LocalDateTime> bounds = new TreeMap<>();
+        jdbcTemplate.query("SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass",
+                rs -> {
+                    Matcher m = UPPER_BOUND.matcher(rs.getString(2));
+                    if (m.find()) {
+                        bounds.put(rs.getString(1), Timestamp.valueOf(m.group(1)).toLocalDateTime());
+                    }
+                }, TABLE);
+        return bounds;
+    }
+}
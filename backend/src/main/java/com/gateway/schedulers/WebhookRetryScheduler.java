@@ -1,54 +1,75 @@
 package com.gateway.schedulers;
 
-import com.gateway.entities.WebhookLog;
 import com.gateway.jobs.DeliverWebhookJob;
 import com.gateway.repositories.WebhookLogRepository;
-import org.springframework.data.redis.core.RedisTemplate;
+import com.gateway.services.JobQueue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.UUID;
 
+/**
+ * Moves webhook retries whose time has come from the delay queue ({@code queue:webhooks:delayed})
+ * onto the webhook stream. WebhookWorker schedules a retry there when a delivery fails, so the
+ * cost of a run depends on how many retries are due, not on the size of webhook_logs.
+ */
 @Component
 public class WebhookRetryScheduler {
 
     private final WebhookLogRepository webhookLogRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final JobQueue jobQueue;
+
+    @Value("${gateway.webhooks.retry-batch-size:500}")
+    private int batchSize;
+
+    // Older logs are not looked at (their partitions are skipped); their retries are long over
+    @Value("${gateway.webhooks.retry.seed-lookback-days:30}")
+    private int seedLookbackDays;
 
     public WebhookRetryScheduler(WebhookLogRepository webhookLogRepository,
-            RedisTemplate<String, Object> redisTemplate) {
+            JobQueue jobQueue) {
         this.webhookLogRepository = webhookLogRepository;
-        this.redisTemplate = redisTemplate;
+        this.jobQueue = jobQueue;
     }
 
-    @Scheduled(fixedDelay = 10000) // Run every 10 seconds
+    @Scheduled(fixedDelayString = "${gateway.webhooks.retry-poll-interval-ms:1000}")
     public void retryWebhooks() {
-        // Find logs that are 'pending' and have a nextRetryAt in the past
-        List<WebhookLog> pendingLogs = webhookLogRepository.findByStatusAndNextRetryAtLessThanEqual("pending",
-                LocalDateTime.now());
-
-        for (WebhookLog log : pendingLogs) {
-            System.out.println("Rescheduling webhook: " + log.getId());
-
-            // Re-enqueue the job
-            DeliverWebhookJob job = new DeliverWebhookJob(log.getId().toString());
-            redisTemplate.convertAndSend("queue:webhooks", job);
-
-            // Update status temporarily so we don't pick it up again immediately (Worker
-            // will update it)
-            // Or better, we just trust the worker to pick it up quickly.
-            // Ideally, to prevent double-processing if the queue is backed up, we might
-            // want a 'queued' status,
-            // but for this simple requirement, just relying on the worker to update it is
-            // likely acceptable
-            // OR we can rely on the fact that nextRetryAt won't be updated until the worker
-            // fails it again.
-            // CAUTION: If worker is slow, this job might run again in 10s and re-enqueue.
-            // To be safe, let's bump the nextRetryAt slightly here or use a 'processing'
-            // state?
-            // The requirements say status defaults to 'pending'.
-            // Let's just leave it, assuming worker picks it up efficiently.
+        try {
+            long promoted;
+            do {
+                promoted = jobQueue.promoteDue(JobQueue.WEBHOOKS, batchSize);
+                if (promoted > 0) {
+                    System.out.println("Rescheduled " + promoted + " webhook(s)");
+                }
+            } while (promoted == batchSize);
+        } catch (Exception e) {
+            System.err.println("Webhook retry promotion failed: " + e.getMessage());
+        }
+    }
+
+    // Retries recorded in the database before the delay queue existed (or after Redis lost its data)
+    // are put back once on startup; re-adding one that is already queued only resets its due time
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedFromDatabase() {
+        LocalDateTime now = LocalDateTime.now();
+        int seeded = 0;
+        for (Object[] row : webhookLogRepository.findScheduledRetries(now.minusDays(seedLookbackDays))) {
+            UUID id = (UUID) row[0];
+            UUID merchantId = (UUID) row[1];
+            LocalDateTime createdAt = (LocalDateTime) row[2];
+            LocalDateTime nextRetryAt = (LocalDateTime) row[3];
+            jobQueue.enqueueAfter(JobQueue.WEBHOOKS,
+                    new DeliverWebhookJob(id.toString(), merchantId.toString(), createdAt.toString()),
+                    Duration.between(now, nextRetryAt));
+            seeded++;
+        }
+        if (seeded > 0) {
+            System.out.println("Seeded " + seeded + " webhook retries from the database");
         }
     }
 }
@@ -0,0 +1,59 @@
+package com.gateway.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulated acquirer/bank. Instead of sleeping on a worker thread, a job registers a
+ * completion that is released by a shared timer once the simulated processing delay has passed,
+ * so any number of payments and refunds can be in flight on a handful of threads.
+ * The timer only keeps time: completions do blocking database work, so they run on the
+ * executor the caller passes in, and a slow commit never delays another payment's timer.
+ */
+@Service
+public class BankSimulator {
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    public BankSimulator(@Value("${gateway.simulation.timer-threads:2}") int timerThreads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.timer = new ScheduledThreadPoolExecutor(timerThreads, r -> {
+            Thread thread = new Thread(r, "bank-simulator-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Runs {@code completion} on {@code executor} once {@code delayMs} has passed.
+     * The returned future completes when the completion has run (or failed).
+     */
+    public CompletableFuture<Void> respondAfter(long delayMs, Executor executor, Runnable completion) {
+        CompletableFuture<Void> due = new CompletableFuture<>();
+        timer.schedule(() -> due.complete(null), delayMs, TimeUnit.MILLISECONDS);
+        return due.thenRunAsync(completion, executor);
+    }
+
+    public long randomDelay(long minMs, long maxMs) {
+        return maxMs > minMs ? ThreadLocalRandom.current().nextLong(minMs, maxMs + 1) : minMs;
+    }
+
+    public int getScheduledCount() {
+        return timer.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Pending completions are dropped; their jobs are still unacknowledged and get reclaimed
+        timer.shutdownNow();
+    }
+}
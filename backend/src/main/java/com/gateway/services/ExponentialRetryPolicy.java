@@ -0,0 +1,51 @@
+package com.gateway.services;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter, so logs that failed together (e.g. during a merchant outage)
+ * come due spread out rather than all at once.
+ * FULL: uniform in [min, min(cap, base * multiplier^(n-1))].
+ * DECORRELATED: uniform in [base, previous * 3], capped; each log's schedule drifts independently.
+ */
+public class ExponentialRetryPolicy implements RetryPolicy {
+
+    public enum Jitter { FULL, DECORRELATED }
+
+    private final Jitter jitter;
+    private final long baseMs;
+    private final long capMs;
+    private final long minMs;
+    private final double multiplier;
+    private final int maxAttempts;
+
+    public ExponentialRetryPolicy(Jitter jitter, Duration base, Duration cap, Duration min, double multiplier,
+            int maxAttempts) {
+        this.jitter = jitter;
+        this.multiplier = Math.max(multiplier, 1.0);
+        this.baseMs = base.toMillis();
+        this.capMs = Math.max(cap.toMillis(), baseMs);
+        this.minMs = Math.min(min.toMillis(), baseMs);
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public Duration nextDelay(int failedAttempts, Duration previousDelay) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (jitter == Jitter.DECORRELATED) {
+            long previousMs = previousDelay != null ? Math.max(previousDelay.toMillis(), baseMs) : baseMs;
+            long upper = Math.min(capMs, previousMs * 3);
+            return Duration.ofMillis(upper > baseMs ? random.nextLong(baseMs, upper + 1) : baseMs);
+        }
+
+        int exponent = Math.max(failedAttempts - 1, 0);
+        long ceiling = (long) Math.min(capMs, baseMs * Math.pow(multiplier, exponent));
+        return Duration.ofMillis(ceiling > minMs ? random.nextLong(minMs, ceiling + 1) : minMs);
+    }
+}
@@ -0,0 +1,26 @@
+package com.gateway.services;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A fixed list of delays, one per retry; the attempt after the last one is final.
+ */
+public class FixedRetryPolicy implements RetryPolicy {
+
+    private final List<Duration> delays;
+
+    public FixedRetryPolicy(List<Duration> delays) {
+        this.delays = List.copyOf(delays);
+    }
+
+    @Override
+    public int getMaxAttempts() {
+        return delays.size() + 1;
+    }
+
+    @Override
+    public Duration nextDelay(int failedAttempts, Duration previousDelay) {
+        return delays.get(Math.min(Math.max(failedAttempts, 1), delays.size()) - 1);
+    }
+}
@@ -0,0 +1,185 @@
+package com.gateway.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Idempotency-Key store in Redis. The first request with a key claims it with SET NX (an
+ * "in progress" marker with a short TTL); concurrent duplicates wait briefly for its response
+ * instead of creating a second payment. Finished responses are stored as raw bytes
+ * (status code + body) under a TTL, so a retry is one GET written straight to the response.
+ */
+@Service
+public class IdempotencyStore {
+
+    private static final String PREFIX = "idempotency:";
+    // Marker values start with a NUL byte, which a stored response (3 ASCII digits) never does
+    private static final byte IN_PROGRESS = 0;
+
+    // Drops the marker only if it is still ours (it may have expired and been claimed again)
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    // Replaces the marker with the response only if it is still ours, like RELEASE_SCRIPT: once it has
+    // expired another request may hold the key, and its claim must not be overwritten
+    private static final DefaultRedisScript<Long> COMPLETE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) "
+                    + "return 1 end return 0",
+            Long.class);
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    // Same-node waiters are woken as soon as the response is stored; others notice on their next poll
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> completions = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Duration inProgressTtl;
+    private final long waitMs;
+    private final long pollMs;
+
+    public IdempotencyStore(RedisConnectionFactory connectionFactory,
+            @Value("${gateway.idempotency.ttl-hours:24}") long ttlHours,
+            @Value("${gateway.idempotency.in-progress-ttl-seconds:30}") long inProgressTtlSeconds,
+            @Value("${gateway.idempotency.wait-ms:2000}") long waitMs,
+            @Value("${gateway.idempotency.poll-ms:20}") long pollMs) {
+        this.redisTemplate = new RedisTemplate<>();
+        this.redisTemplate.setConnectionFactory(connectionFactory);
+        this.redisTemplate.setKeySerializer(new StringRedisSerializer());
+        this.redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        this.redisTemplate.afterPropertiesSet();
+        this.ttl = Duration.ofHours(ttlHours);
+        this.inProgressTtl = Duration.ofSeconds(inProgressTtlSeconds);
+        this.waitMs = waitMs;
+        this.pollMs = pollMs;
+    }
+
+    /**
+     * Claims the key for this request, or returns the response of the request that already used it.
+     * Waits up to gateway.idempotency.wait-ms while another request holds the key; if it is still
+     * running after that, the result is {@link Claim#inProgress()}.
+     */
+    public Claim claim(String merchantId, String idempotencyKey) {
+        String key = PREFIX + merchantId + ":" + idempotencyKey;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        CompletableFuture<Void> completion = null;
+        try {
+            while (true) {
+                byte[] stored = redisTemplate.opsForValue().get(key);
+                if (stored != null && stored.length > 0 && stored[0] != IN_PROGRESS) {
+                    return Claim.completed(StoredResponse.decode(stored));
+                }
+
+                if (stored == null) {
+                    byte[] marker = marker();
+                    if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, marker, inProgressTtl))) {
+                        return Claim.acquired(key, marker);
+                    }
+                    continue; // Someone claimed it in between; look at what they stored
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return Claim.inProgress();
+                }
+                try {
+                    completion = completions.computeIfAbsent(key, k -> new CompletableFuture<>());
+                    completion.get(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(pollMs)), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    // Poll again: the holder may be on another node
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Claim.inProgress();
+                } catch (Exception e) {
+                    // Completed exceptionally: treat like a wake-up
+                }
+            }
+        } finally {
+            // Don't leave a future behind for a holder on another node to never complete;
+            // other local waiters on it fall back to polling
+            if (completion != null) {
+                completions.remove(key, completion);
+            }
+        }
+    }
+
+    // Stores the response for the claimed key (replacing the marker) and wakes local waiters.
+    // Returns false if the marker had expired, in which case nothing is stored
+    public boolean complete(Claim claim, int status, byte[] body) {
+        byte[] ttlMillis = String.valueOf(ttl.toMillis()).getBytes(StandardCharsets.US_ASCII);
+        Long stored = redisTemplate.execute(COMPLETE_SCRIPT, List.of(claim.key()), claim.marker(),
+                new StoredResponse(status, body).encode(), ttlMillis);
+        wake(claim.key());
+        if (stored == null || stored == 0) {
+            System.out.println("Idempotency key " + claim.key() + " expired before its response was stored; "
+                    + "a retry with it will run the request again");
+            return false;
+        }
+        return true;
+    }
+
+    // The request failed without a response worth replaying: let the next attempt with this key run
+    public void release(Claim claim) {
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(claim.key()), claim.marker());
+        wake(claim.key());
+    }
+
+    private void wake(String key) {
+        CompletableFuture<Void> completion = completions.remove(key);
+        if (completion != null) {
+            completion.complete(null);
+        }
+    }
+
+    private static byte[] marker() {
+        byte[] token = UUID.randomUUID().toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] marker = new byte[token.length + 1];
+        marker[0] = IN_PROGRESS;
+        System.arraycopy(token, 0, marker, 1, token.length);
+        return marker;
+    }
+
+    public record StoredResponse(int status, byte[] body) {
+
+        // "201" followed by the body bytes
+        byte[] encode() {
+            byte[] encoded = new byte[body.length + 3];
+            byte[] code = String.valueOf(status).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(code, 0, encoded, 0, 3);
+            System.arraycopy(body, 0, encoded, 3, body.length);
+            return encoded;
+        }
+
+        static StoredResponse decode(byte[] stored) {
+            int status = Integer.parseInt(new String(stored, 0, 3, StandardCharsets.US_ASCII));
+            return new StoredResponse(status, Arrays.copyOfRange(stored, 3, stored.length));
+        }
+    }
+
+    /**
+     * Outcome of {@link #claim}: acquired (key and marker set, the caller does the work), completed
+     * (response set, replay it) or neither (another request with the key is still running).
+     */
+    public record Claim(String key, byte[] marker, StoredResponse response) {
+
+        static Claim acquired(String key, byte[] marker) { return new Claim(key, marker, null); }
+        static Claim completed(StoredResponse response) { return new Claim(null, null, response); }
+        static Claim inProgress() { return new Claim(null, null, null); }
+
+        public boolean isAcquired() { return key != null; }
+        public boolean isCompleted() { return response != null; }
+    }
+}
@@ -0,0 +1,230 @@
+package com.gateway.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.entities.OutboxEvent;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Durable job queues backed by Redis Streams.
+ * Every queue is read through one consumer group, so each job is handed to exactly
+ * one worker and stays pending until that worker acknowledges it.
+ */
+@Service
+public class JobQueue {
+
+    public static final String PAYMENTS = "queue:payments";
+    public static final String REFUNDS = "queue:refunds";
+    public static final String WEBHOOKS = "queue:webhooks";
+    public static final List<String> QUEUES = List.of(PAYMENTS, REFUNDS, WEBHOOKS);
+
+    public static final String GROUP = "gateway-workers";
+    public static final String PAYLOAD_FIELD = "payload";
+
+    // Jobs waiting for a future time live in a sorted set next to their stream, scored by due time (epoch millis)
+    public static final String DELAYED_SUFFIX = ":delayed";
+
+    // Jobs that kept failing are moved to a stream next to their queue, with the original id and delivery count
+    public static final String DEAD_SUFFIX = ":dead";
+    private static final int DEAD_MAX_LENGTH = 100_000;
+
+    // XAUTOCLAIM is not exposed by Spring Data Redis, so run it server side and flatten the reply to
+    // [id1, payload1, deliveries1, id2, ...]. The delivery count (which includes this claim) comes from XPENDING
+    private static final DefaultRedisScript<List<String>> RECLAIM_SCRIPT = listScript("""
+            local reply = redis.call('XAUTOCLAIM', KEYS[1], ARGV[1], ARGV[2], ARGV[3], '0-0', 'COUNT', ARGV[4])
+            local out = {}
+            for _, entry in ipairs(reply[2]) do
+                if type(entry) == 'table' and type(entry[2]) == 'table' then
+                    local fields = entry[2]
+                    for i = 1, #fields, 2 do
+                        if fields[i] == 'payload' then
+                            local pending = redis.call('XPENDING', KEYS[1], ARGV[1], entry[1], entry[1], 1)
+                            table.insert(out, entry[1])
+                            table.insert(out, fields[i + 1])
+                            table.insert(out, tostring(pending[1] and pending[1][4] or 1))
+                        end
+                    end
+                end
+            end
+            return out
+            """);
+
+    // Copies the entry to the dead-letter stream, then acknowledges and drops it, atomically
+    private static final DefaultRedisScript<Long> DEAD_LETTER_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[5], '*', 'payload', ARGV[3], 'source-id', ARGV[2], 'deliveries', ARGV[4])
+            redis.call('XACK', KEYS[1], ARGV[1], ARGV[2])
+            return redis.call('XDEL', KEYS[1], ARGV[2])
+            """, Long.class);
+
+    // Acknowledge and drop the entry in one round trip so finished jobs don't pile up in the stream
+    private static final DefaultRedisScript<Long> ACK_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('XACK', KEYS[1], ARGV[1], ARGV[2]) return redis.call('XDEL', KEYS[1], ARGV[2])",
+            Long.class);
+
+    // Moves due jobs from the sorted set to the stream. The ZREM and XADD run atomically,
+    // so a job is promoted once even with several schedulers racing
+    private static final DefaultRedisScript<Long> PROMOTE_SCRIPT = new DefaultRedisScript<>("""
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            for _, job in ipairs(due) do
+                redis.call('ZREM', KEYS[1], job)
+                redis.call('XADD', KEYS[2], '*', 'payload', job)
+            end
+            return #due
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String consumerName;
+
+    public JobQueue(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        String host = System.getenv().getOrDefault("HOSTNAME", "gateway");
+        this.consumerName = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public String getConsumerName() {
+        return consumerName;
+    }
+
+    public RecordId enqueue(String queue, Object job) {
+        return stringRedisTemplate.opsForStream().add(
+                StreamRecords.string(Map.of(PAYLOAD_FIELD, toJson(job))).withStreamKey(queue));
+    }
+
+    // Appends already-serialized jobs, all in one pipelined round trip
+    public void enqueueAll(List<OutboxEvent> events) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (OutboxEvent event : events) {
+                connection.streamCommands().xAdd(StreamRecords.rawBytes(
+                                Map.of(PAYLOAD_FIELD.getBytes(StandardCharsets.UTF_8),
+                                        event.getPayload().getBytes(StandardCharsets.UTF_8)))
+                        .withStreamKey(event.getQueue().getBytes(StandardCharsets.UTF_8)));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Schedules {@code job} to be appended to {@code queue} once {@code delay} has passed.
+     * The serialized job is the set member, so scheduling the same job again only moves its due time.
+     */
+    public void enqueueAfter(String queue, Object job, Duration delay) {
+        long dueAt = System.currentTimeMillis() + Math.max(delay.toMillis(), 0);
+        stringRedisTemplate.opsForZSet().add(queue + DELAYED_SUFFIX, toJson(job), dueAt);
+    }
+
+    // Promotes up to {@code limit} due jobs onto the stream and returns how many were moved
+    public long promoteDue(String queue, int limit) {
+        Long promoted = stringRedisTemplate.execute(PROMOTE_SCRIPT, List.of(queue + DELAYED_SUFFIX, queue),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(limit));
+        return promoted == null ? 0 : promoted;
+    }
+
+    // Drops scheduled jobs that are no longer needed (e.g. a safety-net retry for a delivery that succeeded)
+    public void cancelDelayed(String queue, List<?> jobs) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.opsForZSet().remove(queue + DELAYED_SUFFIX, jobs.stream().map(this::toJson).toArray());
+    }
+
+    public Long delayedSize(String queue) {
+        return stringRedisTemplate.opsForZSet().zCard(queue + DELAYED_SUFFIX);
+    }
+
+    public void ack(String queue, RecordId recordId) {
+        stringRedisTemplate.execute(ACK_SCRIPT, List.of(queue), GROUP, recordId.getValue());
+    }
+
+    // Creates the stream and its consumer group if they don't exist yet
+    public void ensureGroup(String queue) {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> createGroup(connection, queue));
+        } catch (RedisSystemException e) {
+            String reason = e.getMostSpecificCause().getMessage();
+            if (reason == null || !reason.contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Takes over jobs that another consumer read but has not acknowledged within {@code minIdle}
+     * (typically because that worker died, or the job failed) and returns them for processing here.
+     * A job already delivered {@code maxDeliveries} times is moved to {@code queue + DEAD_SUFFIX} instead.
+     */
+    public List<MapRecord<String, String, String>> reclaim(String queue, Duration minIdle, int count, int maxDeliveries) {
+        List<String> flat = stringRedisTemplate.execute(RECLAIM_SCRIPT, List.of(queue),
+                GROUP, consumerName, String.valueOf(minIdle.toMillis()), String.valueOf(count));
+
+        List<MapRecord<String, String, String>> records = new ArrayList<>();
+        if (flat == null) {
+            return records;
+        }
+        for (int i = 0; i + 2 < flat.size(); i += 3) {
+            String id = flat.get(i);
+            String payload = flat.get(i + 1);
+            int deliveries = Integer.parseInt(flat.get(i + 2));
+            if (deliveries > maxDeliveries) {
+                // Failed on every attempt so far; stop retrying and keep it for inspection
+                deadLetter(queue, RecordId.of(id), payload, deliveries);
+                continue;
+            }
+            records.add(StreamRecords.string(Map.of(PAYLOAD_FIELD, payload))
+                    .withStreamKey(queue)
+                    .withId(RecordId.of(id)));
+        }
+        return records;
+    }
+
+    public void deadLetter(String queue, RecordId recordId, String payload, int deliveries) {
+        System.err.println("Dead-lettering job " + recordId + " from " + queue + " after " + deliveries + " deliveries");
+        stringRedisTemplate.execute(DEAD_LETTER_SCRIPT, List.of(queue, queue + DEAD_SUFFIX),
+                GROUP, recordId.getValue(), payload, String.valueOf(deliveries), String.valueOf(DEAD_MAX_LENGTH));
+    }
+
+    public Long size(String queue) {
+        return stringRedisTemplate.opsForStream().size(queue);
+    }
+
+    public Long deadSize(String queue) {
+        return stringRedisTemplate.opsForStream().size(queue + DEAD_SUFFIX);
+    }
+
+    // A script whose multi-bulk reply is read as a list of strings. The result type can only be given
+    // as the raw List.class, so the unchecked conversion is confined here
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static DefaultRedisScript<List<String>> listScript(String source) {
+        return new DefaultRedisScript<>(source, (Class) List.class);
+    }
+
+    private String createGroup(RedisConnection connection, String queue) {
+        return connection.streamCommands().xGroupCreate(
+                queue.getBytes(StandardCharsets.UTF_8), GROUP, ReadOffset.from("0"), true);
+    }
+
+    private String toJson(Object job) {
+        try {
+            return objectMapper.writeValueAsString(job);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Job is not serializable: " + job, e);
+        }
+    }
+}
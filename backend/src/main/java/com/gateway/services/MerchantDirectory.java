@@ -0,0 +1,122 @@
+package com.gateway.services;
+
+import com.gateway.models.Merchant;
+import com.gateway.repositories.MerchantRepository;
+import com.gateway.util.ExpiringCache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Read-through cache of merchants keyed by API key and by merchant ID.
+ * Every node evicts its copy when a merchant is changed anywhere in the cluster
+ * (see {@link #INVALIDATION_CHANNEL}).
+ * The merchants returned here are shared by every request on this node and must be treated as
+ * read-only; changes go through {@link #update}, which works on a freshly loaded copy.
+ * Cached merchants are detached from the persistence context that loaded them, so no request's
+ * open-in-view session can hand the shared instance to a later load or flush changes made to it.
+ */
+@Service
+public class MerchantDirectory implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "merchants:invalidate";
+
+    private final MerchantRepository merchantRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ExpiringCache<String, Merchant> byApiKey;
+    private final ExpiringCache<String, Merchant> byId;
+
+    // Null outside a JPA context (unit tests)
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public MerchantDirectory(MerchantRepository merchantRepository,
+            StringRedisTemplate stringRedisTemplate,
+            @Value("${gateway.merchant-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${gateway.merchant-cache.max-size:10000}") int maxSize) {
+        this.merchantRepository = merchantRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.byApiKey = new ExpiringCache<>(Duration.ofSeconds(ttlSeconds), maxSize);
+        this.byId = new ExpiringCache<>(Duration.ofSeconds(ttlSeconds), maxSize);
+    }
+
+    public Optional<Merchant> findByApiKey(String apiKey) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return Optional.empty();
+        }
+        Merchant cached = byApiKey.get(apiKey);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Merchant> merchant = merchantRepository.findByApiKey(apiKey);
+        merchant.ifPresent(this::remember);
+        return merchant;
+    }
+
+    public Optional<Merchant> findById(String merchantId) {
+        if (merchantId == null) {
+            return Optional.empty();
+        }
+        Merchant cached = byId.get(merchantId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Merchant> merchant = merchantRepository.findById(merchantId);
+        merchant.ifPresent(this::remember);
+        return merchant;
+    }
+
+    /**
+     * Write-through update: loads the merchant from the database, applies {@code change}, saves it
+     * and tells every node to drop its copy.
+     * Readers keep seeing the old, unmodified merchant until the change is saved.
+     */
+    public Optional<Merchant> update(String merchantId, Consumer<Merchant> change) {
+        // Never the cached instance: those are detached, so this is the persistence context's own copy
+        Optional<Merchant> merchant = merchantRepository.findById(merchantId);
+        merchant.ifPresent(m -> {
+            change.accept(m);
+            merchantRepository.save(m);
+            invalidate(merchantId);
+        });
+        return merchant;
+    }
+
+    public void invalidate(String merchantId) {
+        evict(merchantId);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, merchantId);
+        } catch (Exception e) {
+            // Other nodes fall back to the TTL
+            System.out.println("Failed to publish merchant invalidation: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evict(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void remember(Merchant merchant) {
+        if (entityManager != null) {
+            entityManager.detach(merchant);
+        }
+        byApiKey.put(merchant.getApiKey(), merchant);
+        byId.put(merchant.getId(), merchant);
+    }
+
+    private void evict(String merchantId) {
+        byId.remove(merchantId);
+        // The API key may have changed, so match on ID rather than the old key
+        byApiKey.removeIf(m -> merchantId.equals(m.getId()));
+    }
+}
@@ -4,7 +4,6 @@ import com.gateway.dto.OrderRequest;
 import com.gateway.models.Order;
 import com.gateway.models.Merchant;
 import com.gateway.repositories.OrderRepository;
-import com.gateway.repositories.MerchantRepository;
 import org.springframework.stereotype.Service;
 import java.util.UUID;
 
@@ -12,19 +11,12 @@ import java.util.UUID;
 public class OrderService {
 
     private final OrderRepository orderRepository;
-    private final MerchantRepository merchantRepository;
 
-    public OrderService(OrderRepository orderRepository, MerchantRepository merchantRepository) {
+    public OrderService(OrderRepository orderRepository) {
         this.orderRepository = orderRepository;
-        this.merchantRepository = merchantRepository;
     }
 
-    public Order createOrder(OrderRequest request, String merchantApiKey) {
-        Merchant merchant = merchantRepository.findAll().stream()
-                .filter(m -> m.getApiKey().equals(merchantApiKey))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Invalid API Key"));
-
+    public Order createOrder(OrderRequest request, Merchant merchant) {
         Order order = new Order();
         // Generate String ID
         order.setId("order_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16));
@@ -0,0 +1,35 @@
+package com.gateway.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.entities.OutboxEvent;
+import com.gateway.repositories.OutboxEventRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Transactional outbox: jobs are written to outbox_events in the same transaction as the
+ * state change that produced them, and OutboxRelay later publishes them to the job queues.
+ */
+@Service
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    // Must join the caller's transaction, otherwise the event could outlive a rolled back change
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String queue, Object job) {
+        try {
+            outboxEventRepository.save(new OutboxEvent(queue, objectMapper.writeValueAsString(job)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Job is not serializable: " + job, e);
+        }
+    }
+}
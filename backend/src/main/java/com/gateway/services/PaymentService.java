@@ -1,25 +1,65 @@
 package com.gateway.services;
 
 import com.gateway.dto.PaymentRequest;
+import com.gateway.jobs.ProcessPaymentJob;
+import com.gateway.models.Merchant;
 import com.gateway.models.Order;
 import com.gateway.models.Payment;
 import com.gateway.repositories.OrderRepository;
+import com.gateway.repositories.PaymentFilter;
 import com.gateway.repositories.PaymentRepository;
+import com.gateway.util.KeysetCursor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
 import java.util.UUID;
 import java.util.Random;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class PaymentService {
 
     private final PaymentRepository paymentRepository;
     private final OrderRepository orderRepository;
+    private final WebhookEmitter webhookEmitter;
+    private final OutboxService outboxService;
     private final Random random = new Random();
 
-    public PaymentService(PaymentRepository paymentRepository, OrderRepository orderRepository) {
+    public PaymentService(PaymentRepository paymentRepository,
+            OrderRepository orderRepository,
+            WebhookEmitter webhookEmitter,
+            OutboxService outboxService) {
         this.paymentRepository = paymentRepository;
         this.orderRepository = orderRepository;
+        this.webhookEmitter = webhookEmitter;
+        this.outboxService = outboxService;
+    }
+
+    // Async API payment: everything the request produces is committed together
+    @Transactional
+    public Payment createPayment(Merchant merchant, PaymentRequest request) {
+        Payment payment = new Payment();
+        payment.setId("pay_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16));
+        payment.setMerchantId(merchant.getId());
+        payment.setOrderId(request.getOrderId()); // Set orderId from request
+        payment.setAmount(request.getAmount());
+        payment.setCurrency(request.getCurrency());
+        payment.setMethod(request.getMethod());
+        payment.setVpa(request.getVpa());
+        payment.setStatus("pending");
+        payment.setCreatedAt(LocalDateTime.now());
+
+        paymentRepository.save(payment);
+
+        // Emit payment.created webhook and enqueue processing (published by OutboxRelay after commit)
+        UUID merchantUuid = UUID.fromString(merchant.getId());
+        webhookEmitter.emit(merchantUuid, "payment.created", payment.getId(), payment);
+        outboxService.enqueue(JobQueue.PAYMENTS, new ProcessPaymentJob(payment.getId()));
+
+        return payment;
     }
 
     public Payment processPayment(PaymentRequest request) {
@@ -57,7 +97,32 @@ public class PaymentService {
                 .orElseThrow(() -> new RuntimeException("Payment not found"));
     }
 
-    public List<Payment> getPaymentsForMerchant(String merchantId) {
-        return paymentRepository.findByMerchantId(merchantId);
+    public List<Payment> listPayments(PaymentFilter filter, KeysetCursor after, int limit) {
+        return paymentRepository.findPage(filter, after, limit);
+    }
+
+    // Totals for the dashboard, aggregated in the database rather than from a full payment list
+    public Map<String, Object> getStats(String merchantId) {
+        long totalCount = 0;
+        long successCount = 0;
+        long successAmount = 0;
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        for (Object[] row : paymentRepository.summarizeByStatus(merchantId)) {
+            String status = (String) row[0];
+            long count = ((Number) row[1]).longValue();
+            byStatus.put(status, count);
+            totalCount += count;
+            if ("success".equals(status)) {
+                successCount = count;
+                successAmount = ((Number) row[2]).longValue();
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total_count", totalCount);
+        stats.put("success_count", successCount);
+        stats.put("success_amount", successAmount);
+        stats.put("count_by_status", byStatus);
+        return stats;
     }
-}
\ No newline at end of file
+}
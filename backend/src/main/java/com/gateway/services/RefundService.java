@@ -0,0 +1,57 @@
+package com.gateway.services;
+
+import com.gateway.entities.Refund;
+import com.gateway.jobs.ProcessRefundJob;
+import com.gateway.models.Merchant;
+import com.gateway.repositories.PaymentRepository;
+import com.gateway.repositories.RefundRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class RefundService {
+
+    private final RefundRepository refundRepository;
+    private final PaymentRepository paymentRepository;
+    private final WebhookEmitter webhookEmitter;
+    private final OutboxService outboxService;
+
+    public RefundService(RefundRepository refundRepository,
+            PaymentRepository paymentRepository,
+            WebhookEmitter webhookEmitter,
+            OutboxService outboxService) {
+        this.refundRepository = refundRepository;
+        this.paymentRepository = paymentRepository;
+        this.webhookEmitter = webhookEmitter;
+        this.outboxService = outboxService;
+    }
+
+    // Empty if the amount is more than what is left to refund on the payment
+    @Transactional
+    public Optional<Refund> createRefund(Merchant merchant, String paymentId, Integer amount, String reason) {
+        if (paymentRepository.reserveRefund(paymentId, amount) == 0) {
+            return Optional.empty();
+        }
+
+        Refund refund = new Refund();
+        refund.setId("rfnd_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16));
+        refund.setPaymentId(paymentId);
+        refund.setMerchantId(UUID.fromString(merchant.getId()));
+        refund.setAmount(amount);
+        refund.setReason(reason);
+        refund.setStatus("pending");
+        refund.setCreatedAt(LocalDateTime.now());
+
+        refundRepository.save(refund);
+
+        // Emit refund.created webhook and enqueue processing (published by OutboxRelay after commit)
+        webhookEmitter.emit(refund.getMerchantId(), "refund.created", refund.getPaymentId(), refund);
+        outboxService.enqueue(JobQueue.REFUNDS, new ProcessRefundJob(refund.getId()));
+
+        return Optional.of(refund);
+    }
+}
@@ -0,0 +1,65 @@
+package com.gateway.services;
+
+import com.gateway.models.Merchant;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Builds the webhook retry policy for a merchant: the configured default, with any
+ * per-merchant attempt limit, base delay or cap layered on top.
+ * In test mode (WEBHOOK_RETRY_INTERVALS_TEST) the fixed 5s/10s/15s/20s schedule is used as before.
+ */
+@Service
+public class RetryPolicies {
+
+    private static final List<Duration> TEST_INTERVALS = List.of(
+            Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(15), Duration.ofSeconds(20));
+
+    private final boolean testMode;
+    private final ExponentialRetryPolicy.Jitter jitter;
+    private final long baseSeconds;
+    private final long maxDelaySeconds;
+    private final long minDelaySeconds;
+    private final double multiplier;
+    private final int maxAttempts;
+    private final RetryPolicy defaultPolicy;
+
+    public RetryPolicies(@Value("${WEBHOOK_RETRY_INTERVALS_TEST:false}") boolean testMode,
+            @Value("${gateway.webhooks.retry.jitter:FULL}") ExponentialRetryPolicy.Jitter jitter,
+            @Value("${gateway.webhooks.retry.base-seconds:60}") long baseSeconds,
+            @Value("${gateway.webhooks.retry.max-delay-seconds:7200}") long maxDelaySeconds,
+            @Value("${gateway.webhooks.retry.min-delay-seconds:5}") long minDelaySeconds,
+            @Value("${gateway.webhooks.retry.multiplier:5}") double multiplier,
+            @Value("${gateway.webhooks.retry.max-attempts:5}") int maxAttempts) {
+        this.testMode = testMode;
+        this.jitter = jitter;
+        this.baseSeconds = baseSeconds;
+        this.maxDelaySeconds = maxDelaySeconds;
+        this.minDelaySeconds = minDelaySeconds;
+        this.multiplier = multiplier;
+        this.maxAttempts = maxAttempts;
+        this.defaultPolicy = testMode
+                ? new FixedRetryPolicy(TEST_INTERVALS)
+                : build(baseSeconds, maxDelaySeconds, maxAttempts);
+    }
+
+    public RetryPolicy forMerchant(Merchant merchant) {
+        if (testMode || merchant == null || (merchant.getWebhookRetryMaxAttempts() == null
+                && merchant.getWebhookRetryBaseSeconds() == null
+                && merchant.getWebhookRetryMaxDelaySeconds() == null)) {
+            return defaultPolicy;
+        }
+        return build(
+                merchant.getWebhookRetryBaseSeconds() != null ? merchant.getWebhookRetryBaseSeconds() : baseSeconds,
+                merchant.getWebhookRetryMaxDelaySeconds() != null ? merchant.getWebhookRetryMaxDelaySeconds() : maxDelaySeconds,
+                merchant.getWebhookRetryMaxAttempts() != null ? merchant.getWebhookRetryMaxAttempts() : maxAttempts);
+    }
+
+    private RetryPolicy build(long base, long maxDelay, int attempts) {
+        return new ExponentialRetryPolicy(jitter, Duration.ofSeconds(base), Duration.ofSeconds(maxDelay),
+                Duration.ofSeconds(minDelaySeconds), multiplier, attempts);
+    }
+}
@@ -0,0 +1,17 @@
+package com.gateway.services;
+
+import java.time.Duration;
+
+/**
+ * Decides when a failed webhook delivery is tried again, and when to give up.
+ */
+public interface RetryPolicy {
+
+    int getMaxAttempts();
+
+    /**
+     * Delay before the next attempt after {@code failedAttempts} failures.
+     * {@code previousDelay} is the delay that preceded the attempt that just failed, or null after the first one.
+     */
+    Duration nextDelay(int failedAttempts, Duration previousDelay);
+}
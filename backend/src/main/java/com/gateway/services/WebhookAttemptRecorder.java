@@ -0,0 +1,82 @@
+package com.gateway.services;
+
+import com.gateway.entities.WebhookAttempt;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Buffers webhook delivery attempts and appends them to webhook_attempts with batched JDBC inserts,
+ * so recording an attempt costs the delivery path no database round trip.
+ * Attempt history is best effort: whatever is buffered when the node dies is lost.
+ */
+@Service
+public class WebhookAttemptRecorder {
+
+    private static final String INSERT_SQL = "INSERT INTO webhook_attempts "
+            + "(webhook_log_id, merchant_id, attempt_number, attempted_at, latency_ms, status_code, response_body) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final int MAX_BODY_LENGTH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<WebhookAttempt> buffer;
+    private final int batchSize;
+
+    public WebhookAttemptRecorder(JdbcTemplate jdbcTemplate,
+            @Value("${gateway.webhooks.attempts.buffer-capacity:10000}") int bufferCapacity,
+            @Value("${gateway.webhooks.attempts.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.batchSize = batchSize;
+    }
+
+    public void record(WebhookAttempt attempt) {
+        String body = attempt.getResponseBody();
+        if (body != null && body.length() > MAX_BODY_LENGTH) {
+            attempt.setResponseBody(body.substring(0, MAX_BODY_LENGTH));
+        }
+        while (!buffer.offer(attempt)) {
+            // Buffer full: this caller writes a batch itself, which slows deliveries down to the insert rate
+            flush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.webhooks.attempts.flush-interval-ms:200}")
+    public void flush() {
+        List<WebhookAttempt> batch = new ArrayList<>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            try {
+                insert(batch);
+            } catch (Exception e) {
+                System.err.println("Failed to write " + batch.size() + " webhook attempts: " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void insert(List<WebhookAttempt> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, attempt) -> {
+            ps.setObject(1, attempt.getWebhookLogId());
+            ps.setObject(2, attempt.getMerchantId());
+            ps.setInt(3, attempt.getAttemptNumber());
+            ps.setTimestamp(4, Timestamp.valueOf(attempt.getAttemptedAt()));
+            ps.setObject(5, attempt.getLatencyMs(), Types.BIGINT);
+            ps.setObject(6, attempt.getStatusCode(), Types.INTEGER);
+            ps.setString(7, attempt.getResponseBody());
+        });
+    }
+}
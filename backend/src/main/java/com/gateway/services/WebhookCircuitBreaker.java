@@ -0,0 +1,171 @@
+package com.gateway.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-merchant circuit breaker around webhook endpoints.
+ * CLOSED: deliveries go out; {@code failure-threshold} consecutive failures open the circuit.
+ * OPEN: no requests are made until the open period ends; callers defer deliveries instead.
+ * HALF_OPEN: a single probe is let through. Success closes the circuit; failure reopens it
+ * for twice as long (up to {@code max-open-ms}).
+ * State changes are mirrored to the {@link #STATE_KEY} hash so the API can show them from any node.
+ */
+@Service
+public class WebhookCircuitBreaker {
+
+    public static final String STATE_KEY = "webhooks:circuit";
+
+    private static final TypeReference<Map<String, Object>> SNAPSHOT_TYPE = new TypeReference<>() {};
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final int failureThreshold;
+    private final long openMs;
+    private final long maxOpenMs;
+    private final ConcurrentHashMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    public WebhookCircuitBreaker(StringRedisTemplate stringRedisTemplate,
+            ObjectMapper objectMapper,
+            @Value("${gateway.webhooks.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${gateway.webhooks.circuit.open-ms:30000}") long openMs,
+            @Value("${gateway.webhooks.circuit.max-open-ms:600000}") long maxOpenMs) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+        this.maxOpenMs = maxOpenMs;
+    }
+
+    /**
+     * Returns {@link Duration#ZERO} if a request to this merchant's endpoint may go out now
+     * (the caller must then report the outcome), otherwise how long to wait before trying again.
+     */
+    public Duration tryAcquire(String merchantId) {
+        Circuit circuit = circuits.computeIfAbsent(merchantId, id -> new Circuit());
+        long now = System.currentTimeMillis();
+        synchronized (circuit) {
+            switch (circuit.state) {
+                case CLOSED:
+                    return Duration.ZERO;
+                case OPEN:
+                    if (now < circuit.retryAt) {
+                        return Duration.ofMillis(circuit.retryAt - now);
+                    }
+                    circuit.state = State.HALF_OPEN;
+                    circuit.probing = true;
+                    publish(merchantId, circuit);
+                    return Duration.ZERO;
+                default:
+                    // Half-open: only the probe goes out; everything else checks back after it has had time to finish
+                    if (circuit.probing) {
+                        return Duration.ofMillis(openMs);
+                    }
+                    circuit.probing = true;
+                    return Duration.ZERO;
+            }
+        }
+    }
+
+    public void onSuccess(String merchantId) {
+        Circuit circuit = circuits.get(merchantId);
+        if (circuit == null) {
+            return;
+        }
+        synchronized (circuit) {
+            boolean changed = circuit.state != State.CLOSED;
+            circuit.state = State.CLOSED;
+            circuit.consecutiveFailures = 0;
+            circuit.currentOpenMs = openMs;
+            circuit.probing = false;
+            if (changed) {
+                System.out.println("Webhook circuit CLOSED for merchant " + merchantId);
+                publish(merchantId, circuit);
+            }
+        }
+    }
+
+    public void onFailure(String merchantId) {
+        Circuit circuit = circuits.computeIfAbsent(merchantId, id -> new Circuit());
+        long now = System.currentTimeMillis();
+        synchronized (circuit) {
+            circuit.consecutiveFailures++;
+            if (circuit.state == State.HALF_OPEN) {
+                // The probe failed: back off harder before the next one
+                circuit.currentOpenMs = Math.min(circuit.currentOpenMs * 2, maxOpenMs);
+                open(merchantId, circuit, now);
+            } else if (circuit.state == State.CLOSED && circuit.consecutiveFailures >= failureThreshold) {
+                open(merchantId, circuit, now);
+            }
+        }
+    }
+
+    // State as last published by any node; merchants that never tripped are CLOSED
+    public Map<String, Object> getSnapshot(String merchantId) {
+        String json = states().get(STATE_KEY, merchantId);
+        if (json != null) {
+            try {
+                return objectMapper.readValue(json, SNAPSHOT_TYPE);
+            } catch (JsonProcessingException e) {
+                System.err.println("Unreadable circuit state for merchant " + merchantId + ": " + e.getMessage());
+            }
+        }
+        Map<String, Object> closed = new LinkedHashMap<>();
+        closed.put("state", State.CLOSED.name());
+        closed.put("consecutive_failures", 0);
+        return closed;
+    }
+
+    private void open(String merchantId, Circuit circuit, long now) {
+        circuit.state = State.OPEN;
+        circuit.probing = false;
+        circuit.openedAt = now;
+        circuit.retryAt = now + circuit.currentOpenMs;
+        System.out.println("Webhook circuit OPEN for merchant " + merchantId + " for " + circuit.currentOpenMs + "ms");
+        publish(merchantId, circuit);
+    }
+
+    // Caller holds the circuit's lock
+    private void publish(String merchantId, Circuit circuit) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("state", circuit.state.name());
+        snapshot.put("consecutive_failures", circuit.consecutiveFailures);
+        if (circuit.state != State.CLOSED) {
+            snapshot.put("opened_at", Instant.ofEpochMilli(circuit.openedAt).toString());
+            snapshot.put("retry_at", Instant.ofEpochMilli(circuit.retryAt).toString());
+        }
+        try {
+            states().put(STATE_KEY, merchantId, objectMapper.writeValueAsString(snapshot));
+        } catch (Exception e) {
+            // Visibility only; the breaker itself keeps working
+            System.err.println("Failed to publish circuit state for merchant " + merchantId + ": " + e.getMessage());
+        }
+    }
+
+    // merchant ID -> JSON snapshot
+    private HashOperations<String, String, String> states() {
+        return stringRedisTemplate.opsForHash();
+    }
+
+    private final class Circuit {
+        State state = State.CLOSED;
+        int consecutiveFailures;
+        long currentOpenMs = openMs;
+        long openedAt;
+        long retryAt;
+        boolean probing;
+    }
+}
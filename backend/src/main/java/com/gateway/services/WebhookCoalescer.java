@@ -0,0 +1,119 @@
+package com.gateway.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gateway.entities.WebhookLog;
+import com.gateway.jobs.DeliverWebhookJob;
+import com.gateway.repositories.WebhookLogRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Merges a payment's undelivered webhook events into a single delivery (for merchants that opt in).
+ * The log being delivered takes a payload with the newest event's state plus every merged event
+ * in order under {@code events}; the other logs are marked {@code coalesced} and point at it.
+ */
+@Service
+public class WebhookCoalescer {
+
+    private final WebhookLogRepository webhookLogRepository;
+    private final JobQueue jobQueue;
+    private final ObjectMapper objectMapper;
+
+    @Value("${gateway.webhooks.partitions.pending-lookback-days:30}")
+    private int pendingLookbackDays;
+
+    public WebhookCoalescer(WebhookLogRepository webhookLogRepository,
+            JobQueue jobQueue,
+            ObjectMapper objectMapper) {
+        this.webhookLogRepository = webhookLogRepository;
+        this.jobQueue = jobQueue;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the log to deliver, carrying the merged payload if there was anything to merge,
+     * or null if {@code log} is no longer pending (e.g. another worker already merged it).
+     * The other logs are claimed with one conditional update rather than row locks: any that
+     * another worker delivered or merged in the meantime are simply left out.
+     */
+    @Transactional
+    public WebhookLog coalesce(WebhookLog log) {
+        LocalDateTime since = log.getCreatedAt().minusDays(pendingLookbackDays);
+        List<WebhookLog> pending = webhookLogRepository.findPendingForResource(
+                log.getMerchantId(), log.getResourceId(), since);
+        if (pending.stream().noneMatch(l -> l.getId().equals(log.getId()))) {
+            return null;
+        }
+        List<UUID> others = pending.stream().map(WebhookLog::getId).filter(id -> !id.equals(log.getId())).toList();
+        Set<UUID> claimed = new HashSet<>(webhookLogRepository.markCoalesced(others, log.getId(), since));
+        if (claimed.isEmpty()) {
+            return log;
+        }
+
+        List<WebhookLog> merging = pending.stream()
+                .filter(l -> l.getId().equals(log.getId()) || claimed.contains(l.getId()))
+                .toList();
+        ArrayNode events = objectMapper.createArrayNode();
+        List<DeliverWebhookJob> merged = new ArrayList<>();
+        for (WebhookLog l : merging) {
+            appendEvents(events, l);
+            if (claimed.contains(l.getId())) {
+                merged.add(new DeliverWebhookJob(l.getId().toString(), l.getMerchantId().toString(),
+                        l.getCreatedAt().toString()));
+            }
+        }
+
+        JsonNode latest = read(merging.get(merging.size() - 1));
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.set("event", latest.get("event"));
+        payload.set("timestamp", latest.get("timestamp"));
+        payload.set("data", latest.get("data"));
+        payload.set("events", events);
+
+        if (webhookLogRepository.updatePendingPayload(log.getId(), log.getCreatedAt(), payload.toString()) == 0) {
+            // This log was itself merged into another delivery meanwhile: hand the claimed logs back
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return null;
+        }
+        // The caller's copy, not the one loaded here, so nothing is flushed beyond the two updates
+        log.setPayload(payload.toString());
+
+        // Their own retries are no longer needed; a job already on the stream finds them coalesced and skips
+        jobQueue.cancelDelayed(JobQueue.WEBHOOKS, merged);
+        return log;
+    }
+
+    // A log that already carries merged events contributes all of them, otherwise just its own
+    private void appendEvents(ArrayNode events, WebhookLog log) {
+        JsonNode payload = read(log);
+        if (payload.has("events")) {
+            payload.get("events").forEach(events::add);
+            return;
+        }
+        ObjectNode entry = events.addObject();
+        entry.put("id", log.getId().toString());
+        entry.set("event", payload.get("event"));
+        entry.set("timestamp", payload.get("timestamp"));
+    }
+
+    private JsonNode read(WebhookLog log) {
+        try {
+            return objectMapper.readTree(log.getPayload());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable payload on webhook log " + log.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.gateway.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.entities.WebhookLog;
+import com.gateway.jobs.DeliverWebhookJob;
+import com.gateway.repositories.WebhookLogRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Records a webhook event and schedules its delivery.
+ * The WebhookLog and the delivery job are written in the caller's transaction, so the
+ * event exists if and only if the state change that produced it was committed.
+ * Events the merchant is not subscribed to are dropped here, before any write.
+ */
+@Service
+public class WebhookEmitter {
+
+    private final WebhookLogRepository webhookLogRepository;
+    private final OutboxService outboxService;
+    private final ObjectMapper objectMapper;
+    private final WebhookSubscriptions webhookSubscriptions;
+
+    public WebhookEmitter(WebhookLogRepository webhookLogRepository,
+            OutboxService outboxService,
+            ObjectMapper objectMapper,
+            WebhookSubscriptions webhookSubscriptions) {
+        this.webhookLogRepository = webhookLogRepository;
+        this.outboxService = outboxService;
+        this.objectMapper = objectMapper;
+        this.webhookSubscriptions = webhookSubscriptions;
+    }
+
+    // Returns null when the merchant does not receive this event (nothing is persisted or enqueued)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public WebhookLog emit(UUID merchantId, String event, String resourceId, Object data) {
+        if (!webhookSubscriptions.isSubscribed(merchantId.toString(), event)) {
+            return null;
+        }
+
+        WebhookLog log = new WebhookLog();
+        log.setId(UUID.randomUUID());
+        log.setMerchantId(merchantId);
+        log.setEvent(event);
+        log.setResourceId(resourceId);
+
+        Map<String, Object> payloadMap = new LinkedHashMap<>();
+        payloadMap.put("event", event);
+        payloadMap.put("timestamp", System.currentTimeMillis() / 1000);
+        payloadMap.put("data", data);
+        try {
+            log.setPayload(objectMapper.writeValueAsString(payloadMap));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Webhook payload is not serializable for " + event, e);
+        }
+
+        log.setStatus("pending");
+        log.setAttempts(0);
+        // At the database's precision, so the created_at carried in the job matches the stored partition key
+        log.setCreatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        webhookLogRepository.save(log);
+
+        outboxService.enqueue(JobQueue.WEBHOOKS, new DeliverWebhookJob(log.getId().toString(), merchantId.toString(),
+                log.getCreatedAt().toString()));
+        return log;
+    }
+}
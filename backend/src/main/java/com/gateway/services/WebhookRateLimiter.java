@@ -0,0 +1,121 @@
+package com.gateway.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adaptive (AIMD) concurrency limit per merchant endpoint.
+ * Each healthy response raises the limit by 1/limit, i.e. about one more concurrent request
+ * per round of requests. A 429, a 5xx, an error or a latency well above the endpoint's usual
+ * latency halves it (at most once per {@code decrease-cooldown-ms}).
+ * A {@code Retry-After} header pauses the merchant until the time it names.
+ */
+@Service
+public class WebhookRateLimiter {
+
+    private final double initialLimit;
+    private final double minLimit;
+    private final double maxLimit;
+    private final double latencyTolerance;
+    private final long latencyFloorMs;
+    private final long decreaseCooldownMs;
+    private final long maxPauseMs;
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public WebhookRateLimiter(
+            @Value("${gateway.webhooks.rate.initial-limit:4}") double initialLimit,
+            @Value("${gateway.webhooks.rate.min-limit:1}") double minLimit,
+            @Value("${gateway.webhooks.fair.max-concurrent-per-merchant:16}") double maxLimit,
+            @Value("${gateway.webhooks.rate.latency-tolerance:2.0}") double latencyTolerance,
+            @Value("${gateway.webhooks.rate.latency-floor-ms:250}") long latencyFloorMs,
+            @Value("${gateway.webhooks.rate.decrease-cooldown-ms:1000}") long decreaseCooldownMs,
+            @Value("${gateway.webhooks.rate.max-pause-ms:3600000}") long maxPauseMs) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.latencyFloorMs = latencyFloorMs;
+        this.decreaseCooldownMs = decreaseCooldownMs;
+        this.maxPauseMs = maxPauseMs;
+    }
+
+    // Concurrent deliveries currently allowed to this merchant's endpoint
+    public int getLimit(String merchantId) {
+        Endpoint endpoint = endpoints.get(merchantId);
+        return endpoint == null ? (int) initialLimit : (int) endpoint.limit;
+    }
+
+    // How long deliveries to this merchant must wait because it asked us to back off (ZERO if not)
+    public Duration pausedFor(String merchantId) {
+        Endpoint endpoint = endpoints.get(merchantId);
+        if (endpoint == null) {
+            return Duration.ZERO;
+        }
+        long remaining = endpoint.pausedUntil - System.currentTimeMillis();
+        return remaining > 0 ? Duration.ofMillis(remaining) : Duration.ZERO;
+    }
+
+    /**
+     * Records one delivery. {@code statusCode} is null when no response arrived (timeout, connection error).
+     */
+    public void onResult(String merchantId, long latencyMs, Integer statusCode, String retryAfter) {
+        Endpoint endpoint = endpoints.computeIfAbsent(merchantId, id -> new Endpoint());
+        long now = System.currentTimeMillis();
+        synchronized (endpoint) {
+            boolean overloaded = statusCode == null || statusCode == 429 || statusCode >= 500;
+            boolean slow = endpoint.typicalLatencyMs > 0
+                    && latencyMs > Math.max(latencyFloorMs, endpoint.typicalLatencyMs * latencyTolerance);
+
+            if (overloaded || slow) {
+                if (now - endpoint.lastDecreaseAt >= decreaseCooldownMs) {
+                    endpoint.limit = Math.max(minLimit, endpoint.limit / 2);
+                    endpoint.lastDecreaseAt = now;
+                }
+            } else if (statusCode / 100 == 2) {
+                endpoint.limit = Math.min(maxLimit, endpoint.limit + 1 / endpoint.limit);
+            }
+
+            // Slow EWMA so a single outlier doesn't move the baseline; failures without a response don't count
+            if (statusCode != null) {
+                endpoint.typicalLatencyMs = endpoint.typicalLatencyMs == 0
+                        ? latencyMs
+                        : endpoint.typicalLatencyMs * 0.95 + latencyMs * 0.05;
+            }
+
+            long pauseMs = parseRetryAfter(retryAfter, now);
+            if (pauseMs > 0) {
+                endpoint.pausedUntil = Math.max(endpoint.pausedUntil, now + Math.min(pauseMs, maxPauseMs));
+            }
+        }
+    }
+
+    // Retry-After is either delay-seconds or an HTTP-date
+    private static long parseRetryAfter(String retryAfter, long now) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return 0;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Long.parseLong(value) * 1000;
+        } catch (NumberFormatException e) {
+            try {
+                return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - now;
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    private final class Endpoint {
+        double limit = initialLimit;
+        double typicalLatencyMs;
+        long lastDecreaseAt;
+        long pausedUntil;
+    }
+}
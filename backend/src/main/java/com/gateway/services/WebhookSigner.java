@@ -0,0 +1,93 @@
+package com.gateway.services;
+
+import com.gateway.models.Merchant;
+import com.gateway.util.ExpiringCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HMAC-SHA256 signatures for webhook payloads.
+ * An initialized {@link Mac} is kept per secret and cloned for each signature, so the key
+ * schedule is computed once per secret rather than once per delivery.
+ * While a merchant's previous secret is inside its rotation window, deliveries carry a
+ * second signature made with it, so receivers can switch secrets without dropping events.
+ */
+@Service
+public class WebhookSigner {
+
+    public static final String SIGNATURE_HEADER = "X-Webhook-Signature";
+    public static final String PREVIOUS_SIGNATURE_HEADER = "X-Webhook-Signature-Previous";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ExpiringCache<String, Mac> prototypes;
+
+    public WebhookSigner(@Value("${gateway.webhooks.signer.cache-ttl-seconds:3600}") long ttlSeconds,
+            @Value("${gateway.webhooks.signer.cache-max-size:10000}") int maxSize) {
+        this.prototypes = new ExpiringCache<>(Duration.ofSeconds(ttlSeconds), maxSize);
+    }
+
+    // Hex HMAC of the payload, or "" when the merchant has no secret
+    public String sign(String payload, String secret) {
+        if (secret == null) {
+            return "";
+        }
+        return toHex(mac(secret).doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public Map<String, String> signatureHeaders(Merchant merchant, String payload) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(SIGNATURE_HEADER, sign(payload, merchant.getWebhookSecret()));
+
+        LocalDateTime previousExpiresAt = merchant.getPreviousWebhookSecretExpiresAt();
+        if (merchant.getPreviousWebhookSecret() != null && previousExpiresAt != null
+                && LocalDateTime.now().isBefore(previousExpiresAt)) {
+            headers.put(PREVIOUS_SIGNATURE_HEADER, sign(payload, merchant.getPreviousWebhookSecret()));
+        }
+        return headers;
+    }
+
+    private Mac mac(String secret) {
+        Mac prototype = prototypes.get(secret);
+        if (prototype == null) {
+            prototype = newMac(secret);
+            prototypes.put(secret, prototype);
+        }
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            // Providers that can't clone get a fresh instance
+            return newMac(secret);
+        }
+    }
+
+    private static Mac newMac(String secret) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialize " + ALGORITHM, e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            out[i * 2] = HEX[v >>> 4];
+            out[i * 2 + 1] = HEX[v & 0x0f];
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,123 @@
+package com.gateway.services;
+
+import com.gateway.entities.WebhookSubscription;
+import com.gateway.models.Merchant;
+import com.gateway.repositories.WebhookSubscriptionRepository;
+import com.gateway.util.ExpiringCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Which events each merchant receives, and where. Resolved subscriptions (including "none")
+ * are cached per merchant so emitting an event costs no query; every node evicts its copy when
+ * a subscription or merchant changes (see {@link #INVALIDATION_CHANNEL}).
+ */
+@Service
+public class WebhookSubscriptions implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "webhook-subscriptions:invalidate";
+    public static final Set<String> EVENTS = Set.of(
+            "payment.created", "payment.success", "payment.failed", "refund.created", "refund.processed");
+    private static final String ALL_EVENTS = "*";
+    private static final Subscription NONE = new Subscription(null, Set.of());
+
+    private final WebhookSubscriptionRepository subscriptionRepository;
+    private final MerchantDirectory merchantDirectory;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ExpiringCache<String, Subscription> cache;
+
+    public WebhookSubscriptions(WebhookSubscriptionRepository subscriptionRepository,
+            MerchantDirectory merchantDirectory,
+            StringRedisTemplate stringRedisTemplate,
+            @Value("${gateway.merchant-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${gateway.merchant-cache.max-size:10000}") int maxSize) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.merchantDirectory = merchantDirectory;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cache = new ExpiringCache<>(Duration.ofSeconds(ttlSeconds), maxSize);
+    }
+
+    public boolean isSubscribed(String merchantId, String event) {
+        Subscription subscription = resolve(merchantId);
+        return subscription.url() != null
+                && (subscription.events().contains(ALL_EVENTS) || subscription.events().contains(event));
+    }
+
+    // Where the merchant's webhooks go, or null if nowhere
+    public String endpointFor(Merchant merchant) {
+        return resolve(merchant.getId()).url();
+    }
+
+    public Optional<WebhookSubscription> find(String merchantId) {
+        return subscriptionRepository.findById(merchantId);
+    }
+
+    public WebhookSubscription save(String merchantId, String url, Collection<String> events) {
+        WebhookSubscription subscription = subscriptionRepository.findById(merchantId).orElseGet(WebhookSubscription::new);
+        subscription.setMerchantId(merchantId);
+        subscription.setUrl(url);
+        subscription.setEvents(String.join(",", events));
+        subscription.setUpdatedAt(LocalDateTime.now());
+        WebhookSubscription saved = subscriptionRepository.save(subscription);
+        invalidate(merchantId);
+        return saved;
+    }
+
+    public void invalidate(String merchantId) {
+        cache.remove(merchantId);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, merchantId);
+        } catch (Exception e) {
+            // Other nodes fall back to the TTL
+            System.out.println("Failed to publish webhook subscription invalidation: " + e.getMessage());
+        }
+    }
+
+    // Also registered on MerchantDirectory's channel: the fallback endpoint is the merchant's webhook_url
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        cache.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private Subscription resolve(String merchantId) {
+        if (merchantId == null) {
+            return NONE;
+        }
+        Subscription cached = cache.get(merchantId);
+        if (cached != null) {
+            return cached;
+        }
+        Subscription subscription = subscriptionRepository.findById(merchantId)
+                .map(s -> new Subscription(emptyToNull(s.getUrl()), parseEvents(s.getEvents())))
+                .orElseGet(() -> merchantDirectory.findById(merchantId)
+                        .map(m -> new Subscription(emptyToNull(m.getWebhookUrl()), Set.of(ALL_EVENTS)))
+                        .orElse(NONE));
+        cache.put(merchantId, subscription);
+        return subscription;
+    }
+
+    private static Set<String> parseEvents(String events) {
+        return Arrays.stream(events.split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static String emptyToNull(String url) {
+        return url == null || url.isEmpty() ? null : url;
+    }
+
+    private record Subscription(String url, Set<String> events) {}
+}
@@ -0,0 +1,95 @@
+package com.gateway.services;
+
+import com.gateway.util.AsyncSemaphore;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking HTTP transport for webhook deliveries, built on the JDK {@link HttpClient}.
+ * The client keeps a keep-alive connection pool per host and negotiates HTTP/2 where the
+ * endpoint supports it, falling back to HTTP/1.1. Requests run on a few selector threads;
+ * at most {@code max-in-flight} are outstanding, later ones wait without holding a thread.
+ */
+@Service
+public class WebhookTransport {
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final AsyncSemaphore inFlight;
+    private final Duration requestTimeout;
+
+    public WebhookTransport(
+            @Value("${gateway.webhooks.http.threads:4}") int threads,
+            @Value("${gateway.webhooks.http.max-in-flight:2000}") int maxInFlight,
+            @Value("${gateway.webhooks.http.pool-size-per-host:0}") int poolSizePerHost,
+            @Value("${gateway.webhooks.http.keep-alive-seconds:30}") int keepAliveSeconds,
+            @Value("${gateway.webhooks.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${gateway.webhooks.read-timeout-ms:10000}") long readTimeoutMs) {
+        // The JDK client sizes its per-host pools from system properties read when the first client is built
+        setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(poolSizePerHost));
+        setIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "webhook-http-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+        this.inFlight = new AsyncSemaphore(maxInFlight);
+        this.requestTimeout = Duration.ofMillis(readTimeoutMs);
+    }
+
+    /**
+     * POSTs {@code body} to {@code url}. The future completes with the response whatever its status,
+     * and exceptionally on connection errors and timeouts.
+     */
+    public CompletableFuture<HttpResponse<String>> post(String url, String body, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        headers.forEach(builder::header);
+        HttpRequest request = builder.build();
+
+        return inFlight.acquire()
+                .thenCompose(ignored -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()))
+                .whenComplete((response, error) -> inFlight.release());
+    }
+
+    public int getInFlight() {
+        return inFlight.getInUse();
+    }
+
+    public int getWaiting() {
+        return inFlight.getWaiting();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+}
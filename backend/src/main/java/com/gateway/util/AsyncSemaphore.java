@@ -0,0 +1,53 @@
+package com.gateway.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Semaphore whose {@link #acquire} returns a future instead of blocking the caller.
+ * Waiters are served in arrival order as permits are released.
+ */
+public class AsyncSemaphore {
+
+    private final int permits;
+    private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private int available;
+
+    public AsyncSemaphore(int permits) {
+        this.permits = permits;
+        this.available = permits;
+    }
+
+    public CompletableFuture<Void> acquire() {
+        synchronized (this) {
+            if (available > 0) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+    }
+
+    public void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            next = waiters.poll();
+            if (next == null) {
+                available++;
+                return;
+            }
+        }
+        // The permit passes straight to the next waiter; complete it outside the lock
+        next.complete(null);
+    }
+
+    public synchronized int getInUse() {
+        return permits - available;
+    }
+
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+}
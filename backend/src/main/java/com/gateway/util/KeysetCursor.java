@@ -0,0 +1,26 @@
+package com.gateway.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position in a newest-first listing ordered by (created_at, id): the last row of the previous page.
+ * Handed to clients as an opaque URL-safe string.
+ */
+public record KeysetCursor(LocalDateTime createdAt, String id) {
+
+    public String encode() {
+        String position = createdAt + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Throws IllegalArgumentException (or DateTimeParseException) for anything encode() did not produce
+    public static KeysetCursor decode(String cursor) {
+        String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",", 2);
+        if (position.length != 2) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return new KeysetCursor(LocalDateTime.parse(position[0]), position[1]);
+    }
+}
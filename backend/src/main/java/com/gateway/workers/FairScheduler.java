@@ -0,0 +1,176 @@
+package com.gateway.workers;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Hands a {@link WorkerPool}'s slots out round-robin across keys (merchants), each key having
+ * its own backlog. A key never holds more than {@code maxRunningPerKey} slots (looked up per key,
+ * so the limit can adapt at runtime) and never buffers
+ * more than {@code maxQueuedPerKey} tasks, so one slow key cannot starve the others.
+ * At most {@code bufferCapacity} tasks wait in total; beyond that {@link #offer} blocks.
+ * When a task finishes, the next one is submitted from a dedicated dispatcher thread rather than
+ * the completion callback: {@link WorkerPool#submit} can block, and blocking a pool or HTTP client
+ * thread that other tasks need to complete on could deadlock.
+ */
+public class FairScheduler {
+
+    private final WorkerPool pool;
+    private final int maxDispatched;
+    private final ToIntFunction<String> maxRunningPerKey;
+    private final int maxQueuedPerKey;
+    private final Semaphore buffered;
+    private final ExecutorService dispatcher;
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final ArrayDeque<Lane> ready = new ArrayDeque<>();
+    private int dispatched;
+
+    public FairScheduler(WorkerPool pool, int maxDispatched, ToIntFunction<String> maxRunningPerKey, int maxQueuedPerKey,
+            int bufferCapacity) {
+        this.pool = pool;
+        this.maxDispatched = maxDispatched;
+        this.maxRunningPerKey = maxRunningPerKey;
+        this.maxQueuedPerKey = maxQueuedPerKey;
+        this.buffered = new Semaphore(bufferCapacity);
+        this.dispatcher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "dispatch-" + pool.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues {@code task} behind earlier tasks for the same key.
+     * Returns false, without queueing it, if that key's backlog is already full.
+     */
+    public boolean offer(String key, Supplier<? extends CompletionStage<?>> task) throws InterruptedException {
+        synchronized (this) {
+            Lane lane = lanes.get(key);
+            if (lane != null && lane.backlog.size() >= maxQueuedPerKey) {
+                return false;
+            }
+        }
+
+        buffered.acquire();
+        synchronized (this) {
+            Lane lane = lanes.computeIfAbsent(key, Lane::new);
+            lane.backlog.add(task);
+            markReady(lane);
+        }
+        dispatch();
+        return true;
+    }
+
+    public synchronized int getBacklog(String key) {
+        Lane lane = lanes.get(key);
+        return lane == null ? 0 : lane.backlog.size();
+    }
+
+    public synchronized int getActiveKeys() {
+        return lanes.size();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Lane lane;
+            Supplier<? extends CompletionStage<?>> task;
+            synchronized (this) {
+                if (dispatched >= maxDispatched || ready.isEmpty()) {
+                    return;
+                }
+                // Next key in turn; it goes to the back of the line if it still has work
+                lane = ready.poll();
+                lane.ready = false;
+                task = lane.backlog.poll();
+                lane.running++;
+                dispatched++;
+                markReady(lane);
+            }
+
+            try {
+                pool.submit(() -> run(lane, task));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                requeue(lane, task);
+                return;
+            } catch (RuntimeException e) {
+                // Pool is shutting down. The task goes back to the head of its lane and is tried
+                // again on the next dispatch; if none comes, its job is still unacknowledged and
+                // another node reclaims it
+                System.err.println("Could not submit task for " + lane.key + ", requeued: " + e);
+                requeue(lane, task);
+                return;
+            }
+            buffered.release();
+        }
+    }
+
+    private synchronized void requeue(Lane lane, Supplier<? extends CompletionStage<?>> task) {
+        lane.running--;
+        dispatched--;
+        lane.backlog.addFirst(task);
+        markReady(lane);
+    }
+
+    private CompletionStage<?> run(Lane lane, Supplier<? extends CompletionStage<?>> task) {
+        CompletionStage<?> pending;
+        try {
+            pending = task.get();
+        } catch (RuntimeException e) {
+            pending = CompletableFuture.failedFuture(e);
+        }
+        return pending.whenComplete((result, error) -> finished(lane));
+    }
+
+    private void finished(Lane lane) {
+        synchronized (this) {
+            lane.running--;
+            dispatched--;
+            markReady(lane);
+            if (lane.running == 0 && lane.backlog.isEmpty()) {
+                lanes.remove(lane.key);
+            }
+        }
+        scheduleDispatch();
+    }
+
+    private void scheduleDispatch() {
+        // One pending run is enough: it keeps going until the pool or the backlog runs out
+        if (dispatchScheduled.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                dispatchScheduled.set(false);
+                dispatch();
+            });
+        }
+    }
+
+    // Caller holds the lock
+    private void markReady(Lane lane) {
+        if (!lane.ready && !lane.backlog.isEmpty() && lane.running < Math.max(1, maxRunningPerKey.applyAsInt(lane.key))) {
+            ready.add(lane);
+            lane.ready = true;
+        }
+    }
+
+    private static final class Lane {
+        final String key;
+        final ArrayDeque<Supplier<? extends CompletionStage<?>>> backlog = new ArrayDeque<>();
+        int running;
+        boolean ready;
+
+        Lane(String key) {
+            this.key = key;
+        }
+    }
+}
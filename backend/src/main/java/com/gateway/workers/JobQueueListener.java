@@ -1,48 +1,145 @@
 package com.gateway.workers;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gateway.jobs.DeliverWebhookJob;
 import com.gateway.jobs.ProcessPaymentJob;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.connection.Message;
-import org.springframework.data.redis.connection.MessageListener;
+import com.gateway.jobs.ProcessRefundJob;
+import com.gateway.services.JobQueue;
+import com.gateway.services.WebhookRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.stream.StreamListener;
 import org.springframework.stereotype.Component;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Routes jobs read from the Redis Streams consumer group to the matching worker,
+ * running each one on that queue's {@link WorkerPool} rather than the stream reader thread.
+ * A job is acknowledged only after its worker's future completes (for payments and refunds,
+ * when the simulated bank answers; for webhooks, when the endpoint responds); if this node
+ * dies first the entry stays pending and is reclaimed by another node (see StalledJobReclaimer).
+ * Webhook deliveries additionally go through a {@link FairScheduler} keyed by merchant, so a
+ * merchant with a slow endpoint only ties up its own share of the webhook pool.
+ */
 @Component
-public class JobQueueListener implements MessageListener {
+public class JobQueueListener implements StreamListener<String, MapRecord<String, String, String>> {
 
-    @Autowired private WebhookWorker webhookWorker;
-    @Autowired private PaymentWorker paymentWorker;
-    
-    // --- FIX: Configure Mapper to ignore unknown fields like "@class" ---
+    private final WebhookWorker webhookWorker;
+    private final PaymentWorker paymentWorker;
+    private final RefundWorker refundWorker;
+    private final JobQueue jobQueue;
+    private final WorkerPools workerPools;
+    private final FairScheduler webhookScheduler;
+    private final Duration webhookOverflowDelay;
+
+    // Ignore unknown fields so older job payloads still deserialize
     private final ObjectMapper objectMapper = new ObjectMapper()
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
+    public JobQueueListener(WebhookWorker webhookWorker,
+            PaymentWorker paymentWorker,
+            RefundWorker refundWorker,
+            JobQueue jobQueue,
+            WorkerPools workerPools,
+            WebhookRateLimiter webhookRateLimiter,
+            @Value("${gateway.webhooks.fair.max-queued-per-merchant:100}") int maxQueuedPerMerchant,
+            @Value("${gateway.webhooks.fair.overflow-delay-ms:1000}") long overflowDelayMs) {
+        this.webhookWorker = webhookWorker;
+        this.paymentWorker = paymentWorker;
+        this.refundWorker = refundWorker;
+        this.jobQueue = jobQueue;
+        this.workerPools = workerPools;
+
+        WorkerPool webhookPool = workerPools.get(JobQueue.WEBHOOKS);
+        // Deliveries are asynchronous, so a slot is an in-flight request rather than a thread.
+        // Each merchant's share is its endpoint's current adaptive limit
+        this.webhookScheduler = new FairScheduler(webhookPool, webhookPool.getMaxInFlight(),
+                webhookRateLimiter::getLimit, maxQueuedPerMerchant, webhookPool.getQueueCapacity());
+        this.webhookOverflowDelay = Duration.ofMillis(overflowDelayMs);
+    }
+
     @Override
-    public void onMessage(Message message, byte[] pattern) {
+    public void onMessage(MapRecord<String, String, String> record) {
+        try {
+            if (JobQueue.WEBHOOKS.equals(record.getStream())) {
+                dispatchWebhook(record);
+                return;
+            }
+
+            // Blocks while this queue's pool is full, which throttles reads for this queue only
+            workerPools.get(record.getStream()).submit(() -> handle(record));
+        } catch (InterruptedException e) {
+            // Not acknowledged, so it will be reclaimed
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // E.g. the pool is shutting down. Thrown from here it would also skip the rest of the
+            // container's batch; caught, only this job waits for the reclaimer
+            System.err.println("Could not dispatch job " + record.getId() + " from " + record.getStream()
+                    + ", left pending: " + e.getMessage());
+        }
+    }
+
+    private void dispatchWebhook(MapRecord<String, String, String> record) throws InterruptedException {
+        DeliverWebhookJob job;
         try {
-            String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
-            String body = new String(message.getBody(), StandardCharsets.UTF_8);
-            
-            // Debug Print (Optional: Helps prove it arrived)
-            System.out.println("JobQueueListener Received: " + body);
-
-            // 1. Route based on the channel (queue name)
-            if ("queue:webhooks".equals(channel)) {
-                DeliverWebhookJob job = objectMapper.readValue(body, DeliverWebhookJob.class);
-                webhookWorker.process(job);
-                
-            } else if ("queue:payments".equals(channel)) {
-                ProcessPaymentJob job = objectMapper.readValue(body, ProcessPaymentJob.class);
-                paymentWorker.process(job);
+            job = objectMapper.readValue(record.getValue().get(JobQueue.PAYLOAD_FIELD), DeliverWebhookJob.class);
+        } catch (JsonProcessingException e) {
+            System.err.println("Dropping malformed job " + record.getId() + " from " + record.getStream() + ": " + e.getMessage());
+            jobQueue.ack(record.getStream(), record.getId());
+            return;
+        }
+
+        // Jobs enqueued before merchantId was added share one lane
+        String merchantKey = job.getMerchantId() != null ? job.getMerchantId() : "";
+        if (!webhookScheduler.offer(merchantKey, () -> handle(record))) {
+            // This merchant's backlog is full: park the delivery on the delay queue instead of
+            // blocking the reader, which would hold up every other merchant's webhooks
+            jobQueue.enqueueAfter(JobQueue.WEBHOOKS, job, webhookOverflowDelay);
+            jobQueue.ack(record.getStream(), record.getId());
+        }
+    }
+
+    private CompletableFuture<Void> handle(MapRecord<String, String, String> record) {
+        String queue = record.getStream();
+        CompletableFuture<Void> work;
+        try {
+            String body = record.getValue().get(JobQueue.PAYLOAD_FIELD);
+
+            // 1. Route based on the stream (queue name)
+            if (JobQueue.WEBHOOKS.equals(queue)) {
+                work = webhookWorker.process(objectMapper.readValue(body, DeliverWebhookJob.class));
+            } else if (JobQueue.PAYMENTS.equals(queue)) {
+                work = paymentWorker.process(objectMapper.readValue(body, ProcessPaymentJob.class));
+            } else if (JobQueue.REFUNDS.equals(queue)) {
+                work = refundWorker.process(objectMapper.readValue(body, ProcessRefundJob.class));
+            } else {
+                work = CompletableFuture.completedFuture(null);
             }
 
+        } catch (JsonProcessingException e) {
+            // Retrying can never fix a payload we can't read
+            System.err.println("Dropping malformed job " + record.getId() + " from " + queue + ": " + e.getMessage());
+            jobQueue.ack(queue, record.getId());
+            return CompletableFuture.completedFuture(null);
+
         } catch (Exception e) {
-            System.err.println("Error processing job from Redis: " + e.getMessage());
-            e.printStackTrace();
+            work = CompletableFuture.failedFuture(e);
         }
+
+        // 2. Once the (possibly asynchronous) work is done, remove it from the group's pending list
+        return work.whenComplete((ignored, error) -> {
+            if (error == null) {
+                jobQueue.ack(queue, record.getId());
+            } else {
+                // Left unacknowledged, so it is retried once it is reclaimed, up to
+                // gateway.queue.max-deliveries times before it goes to the dead-letter stream
+                System.err.println("Error processing job " + record.getId() + " from " + queue + ": " + error.getMessage());
+                error.printStackTrace();
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -1,88 +1,70 @@
 package com.gateway.workers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gateway.entities.Refund;
-import com.gateway.entities.WebhookLog;
-import com.gateway.jobs.DeliverWebhookJob;
 import com.gateway.jobs.ProcessRefundJob;
 import com.gateway.repositories.RefundRepository;
-import com.gateway.repositories.WebhookLogRepository; // Ensure this import exists
-import org.springframework.data.redis.connection.Message;
-import org.springframework.data.redis.connection.MessageListener;
-import org.springframework.data.redis.core.RedisTemplate;
+import com.gateway.services.BankSimulator;
+import com.gateway.services.JobQueue;
+import com.gateway.services.WebhookEmitter;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Component
-public class RefundWorker implements MessageListener {
+public class RefundWorker {
 
     private final RefundRepository refundRepository;
-    private final WebhookLogRepository webhookLogRepository; // Added
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final BankSimulator bankSimulator;
+    private final WebhookEmitter webhookEmitter;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor completionExecutor;
 
-    // Updated Constructor
     public RefundWorker(RefundRepository refundRepository,
-            WebhookLogRepository webhookLogRepository,
-            RedisTemplate<String, Object> redisTemplate,
-            ObjectMapper objectMapper) {
+            BankSimulator bankSimulator,
+            WebhookEmitter webhookEmitter,
+            TransactionTemplate transactionTemplate,
+            WorkerPools workerPools) {
         this.refundRepository = refundRepository;
-        this.webhookLogRepository = webhookLogRepository;
-        this.redisTemplate = redisTemplate;
-        this.objectMapper = objectMapper;
+        this.bankSimulator = bankSimulator;
+        this.webhookEmitter = webhookEmitter;
+        this.transactionTemplate = transactionTemplate;
+        this.completionExecutor = workerPools.get(JobQueue.REFUNDS).getExecutor();
     }
 
-    @Override
-    public void onMessage(Message message, byte[] pattern) {
-        try {
-            // 1. Deserialize
-            ProcessRefundJob job = objectMapper.readValue(message.getBody(), ProcessRefundJob.class);
-            System.out.println("RefundWorker Received: " + job.getRefundId());
+    public CompletableFuture<Void> process(ProcessRefundJob job) {
+        // 1. Job is deserialized by JobQueueListener
+        System.out.println("RefundWorker Received: " + job.getRefundId());
 
-            // 2. Fetch Refund
-            Optional<Refund> refundOpt = refundRepository.findById(job.getRefundId());
-            if (refundOpt.isEmpty())
-                return;
-            Refund refund = refundOpt.get();
+        // 2. Fetch Refund (skip redeliveries of refunds that were already processed)
+        Optional<Refund> refundOpt = refundRepository.findById(job.getRefundId());
+        if (refundOpt.isEmpty() || !"pending".equals(refundOpt.get().getStatus()))
+            return CompletableFuture.completedFuture(null);
 
-            // 3. Process with random 3-5 second delay
-            long delay = 3000 + (long) (Math.random() * 2000);
-            Thread.sleep(delay);
-            refund.setStatus("processed");
-            refund.setProcessedAt(LocalDateTime.now());
-            refundRepository.save(refund);
-
-            System.out.println("Refund PROCESSED: " + refund.getId());
+        // 3. Process with random 3-5 second delay, completed on the refunds pool once the timer fires
+        long delay = bankSimulator.randomDelay(3000, 5000);
+        return bankSimulator.respondAfter(delay, completionExecutor, () -> complete(job.getRefundId()));
+    }
 
-            // 4. Create Webhook Log (The Fix)
-            try {
-                WebhookLog log = new WebhookLog();
-                log.setId(UUID.randomUUID());
-                log.setMerchantId(refund.getMerchantId());
-                log.setEvent("refund.processed");
-                // Convert payload to JSON String
-                log.setPayload(objectMapper.valueToTree(refund).toString());
-                log.setStatus("pending");
-                log.setAttempts(0);
-                log.setCreatedAt(LocalDateTime.now());
+    private void complete(String refundId) {
+        transactionTemplate.executeWithoutResult(status -> markProcessed(refundId));
+    }
 
-                webhookLogRepository.save(log);
+    private void markProcessed(String refundId) {
+        Refund refund = refundRepository.findById(refundId).orElse(null);
+        if (refund == null || !"pending".equals(refund.getStatus()))
+            return;
 
-                // 5. Enqueue Job with LOG ID only
-                // Use log.getId().toString() if your Job expects a String
-                DeliverWebhookJob webhookJob = new DeliverWebhookJob(log.getId().toString());
-                redisTemplate.convertAndSend("queue:webhooks", webhookJob);
+        refund.setStatus("processed");
+        refund.setProcessedAt(LocalDateTime.now());
+        refundRepository.save(refund);
 
-            } catch (Exception e) {
-                System.out.println("Failed to create webhook log: " + e.getMessage());
-                e.printStackTrace();
-            }
+        System.out.println("Refund PROCESSED: " + refund.getId());
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        // 4. Emit Webhook (committed together with the status change)
+        webhookEmitter.emit(refund.getMerchantId(), "refund.processed", refund.getPaymentId(), refund);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package com.gateway.workers;
+
+import com.gateway.entities.WebhookLog;
+import com.gateway.models.Merchant;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects webhook logs per merchant and hands them to {@code flusher} as one batch once
+ * the merchant's batch size is reached or its window has passed since the first log arrived.
+ */
+public class WebhookBatcher {
+
+    public interface Flusher {
+        void flush(Merchant merchant, List<WebhookLog> logs);
+    }
+
+    private final Flusher flusher;
+    private final ScheduledThreadPoolExecutor timer;
+    private final Map<String, Batch> open = new HashMap<>();
+
+    public WebhookBatcher(Flusher flusher) {
+        this.flusher = flusher;
+        AtomicInteger counter = new AtomicInteger();
+        this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "webhook-batcher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    public void add(Merchant merchant, WebhookLog log, int batchSize, long windowMs) {
+        Batch full = null;
+        synchronized (this) {
+            Batch batch = open.get(merchant.getId());
+            if (batch == null) {
+                Batch created = new Batch(merchant);
+                created.deadline = timer.schedule(() -> expire(created), windowMs, TimeUnit.MILLISECONDS);
+                open.put(merchant.getId(), created);
+                batch = created;
+            }
+            // A redelivered job for a log that is already waiting adds nothing
+            if (batch.logs.stream().noneMatch(l -> l.getId().equals(log.getId()))) {
+                batch.logs.add(log);
+            }
+            if (batch.logs.size() >= batchSize) {
+                open.remove(merchant.getId());
+                batch.deadline.cancel(false);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            flusher.flush(full.merchant, full.logs);
+        }
+    }
+
+    public synchronized int getOpenBatches() {
+        return open.size();
+    }
+
+    public void shutdown() {
+        // Unflushed logs are still scheduled on the delay queue and are picked up again from there
+        timer.shutdownNow();
+    }
+
+    private void expire(Batch batch) {
+        synchronized (this) {
+            if (open.get(batch.merchant.getId()) != batch) {
+                return;
+            }
+            open.remove(batch.merchant.getId());
+        }
+        try {
+            flusher.flush(batch.merchant, batch.logs);
+        } catch (Exception e) {
+            System.err.println("Failed to flush webhook batch for merchant " + batch.merchant.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Batch {
+        final Merchant merchant;
+        final List<WebhookLog> logs = new ArrayList<>();
+        ScheduledFuture<?> deadline;
+
+        Batch(Merchant merchant) {
+            this.merchant = merchant;
+        }
+    }
+}
@@ -1,168 +1,362 @@
 package com.gateway.workers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.entities.WebhookAttempt;
 import com.gateway.entities.WebhookLog;
 import com.gateway.jobs.DeliverWebhookJob;
 import com.gateway.models.Merchant;
-import com.gateway.repositories.MerchantRepository;
 import com.gateway.repositories.WebhookLogRepository;
+import com.gateway.services.JobQueue;
+import com.gateway.services.MerchantDirectory;
+import com.gateway.services.RetryPolicies;
+import com.gateway.services.RetryPolicy;
+import com.gateway.services.WebhookAttemptRecorder;
+import com.gateway.services.WebhookCircuitBreaker;
+import com.gateway.services.WebhookCoalescer;
+import com.gateway.services.WebhookRateLimiter;
+import com.gateway.services.WebhookSigner;
+import com.gateway.services.WebhookSubscriptions;
+import com.gateway.services.WebhookTransport;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.connection.Message;
-import org.springframework.data.redis.connection.MessageListener; // MUST be imported
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 @Component
-public class WebhookWorker implements MessageListener {
+public class WebhookWorker {
 
     private final WebhookLogRepository webhookLogRepository;
-    private final MerchantRepository merchantRepository;
+    private final MerchantDirectory merchantDirectory;
+    private final JobQueue jobQueue;
     private final ObjectMapper objectMapper;
-    private final RestTemplate restTemplate;
+    private final WebhookTransport webhookTransport;
+    private final WebhookCircuitBreaker circuitBreaker;
+    private final WebhookSigner webhookSigner;
+    private final WebhookRateLimiter rateLimiter;
+    private final RetryPolicies retryPolicies;
+    private final WebhookCoalescer webhookCoalescer;
+    private final WebhookAttemptRecorder attemptRecorder;
+    private final WebhookSubscriptions webhookSubscriptions;
+    private final WebhookBatcher batcher;
+    private final Executor outcomeExecutor;
 
-    @Value("${WEBHOOK_RETRY_INTERVALS_TEST:false}")
-    private boolean testMode;
+    @Value("${gateway.webhooks.batch.safety-delay-ms:300000}")
+    private long batchSafetyDelayMs;
+
+    @Value("${gateway.webhooks.ordering.enabled:true}")
+    private boolean orderedDelivery;
+
+    // Safety net for a parked event whose wake-up was lost (e.g. the node died)
+    @Value("${gateway.webhooks.ordering.blocked-recheck-ms:300000}")
+    private long blockedRecheckMs;
+
+    // How far back a payment's earlier undelivered events are looked for (older partitions are skipped)
+    @Value("${gateway.webhooks.partitions.pending-lookback-days:30}")
+    private int pendingLookbackDays;
 
     public WebhookWorker(WebhookLogRepository webhookLogRepository,
-            MerchantRepository merchantRepository,
-            ObjectMapper objectMapper) {
+            MerchantDirectory merchantDirectory,
+            JobQueue jobQueue,
+            ObjectMapper objectMapper,
+            WebhookTransport webhookTransport,
+            WebhookCircuitBreaker circuitBreaker,
+            WebhookSigner webhookSigner,
+            WebhookRateLimiter rateLimiter,
+            RetryPolicies retryPolicies,
+            WebhookCoalescer webhookCoalescer,
+            WebhookAttemptRecorder attemptRecorder,
+            WebhookSubscriptions webhookSubscriptions,
+            WorkerPools workerPools) {
         this.webhookLogRepository = webhookLogRepository;
-        this.merchantRepository = merchantRepository;
+        this.merchantDirectory = merchantDirectory;
+        this.jobQueue = jobQueue;
         this.objectMapper = objectMapper;
-        this.restTemplate = new RestTemplate();
+        this.webhookTransport = webhookTransport;
+        this.circuitBreaker = circuitBreaker;
+        this.webhookSigner = webhookSigner;
+        this.rateLimiter = rateLimiter;
+        this.retryPolicies = retryPolicies;
+        this.webhookCoalescer = webhookCoalescer;
+        this.attemptRecorder = attemptRecorder;
+        this.webhookSubscriptions = webhookSubscriptions;
+        this.batcher = new WebhookBatcher(this::deliverBatch);
+        this.outcomeExecutor = workerPools.get(JobQueue.WEBHOOKS).getExecutor();
     }
 
-    // --- THIS IS THE CRITICAL METHOD ---
-    @Override
-    public void onMessage(Message message, byte[] pattern) {
-        try {
-            DeliverWebhookJob job = objectMapper.readValue(message.getBody(), DeliverWebhookJob.class);
-            process(job);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    @PreDestroy
+    public void shutdown() {
+        batcher.shutdown();
     }
 
-    public void process(DeliverWebhookJob job) {
-        WebhookLog log = webhookLogRepository.findById(UUID.fromString(job.getWebhookLogId())).orElse(null);
-        if (log == null || "success".equals(log.getStatus()))
-            return;
+    public CompletableFuture<Void> process(DeliverWebhookJob job) {
+        WebhookLog log = load(job);
+        // Delivered, or given up on (a manual retry resets the status to pending first)
+        if (log == null || !"pending".equals(log.getStatus()))
+            return CompletableFuture.completedFuture(null);
 
+        Merchant merchant = null;
         try {
-            // Fix: Convert Merchant ID (String) to UUID for lookup if needed, or stick to
-            // String if Repo expects it
-            // Based on your MerchantRepository error earlier, it expects String ID.
-            Merchant merchant = merchantRepository.findById(log.getMerchantId().toString()).orElseThrow();
+            merchant = merchantDirectory.findById(log.getMerchantId().toString()).orElseThrow();
 
-            if (merchant.getWebhookUrl() == null || merchant.getWebhookUrl().isEmpty()) {
+            // Unsubscribed since the event was emitted
+            if (webhookSubscriptions.endpointFor(merchant) == null) {
                 log.setStatus("failed");
-                webhookLogRepository.save(log);
-                return;
+                updateDeliveryState(log);
+                releaseNext(log);
+                return CompletableFuture.completedFuture(null);
             }
 
-            String jsonPayload = log.getPayload();
-            String signature = generateSignature(jsonPayload, merchant.getWebhookSecret());
+            if (Boolean.TRUE.equals(merchant.getWebhookCoalesce()) && log.getResourceId() != null) {
+                // Fold this payment's other undelivered events into this delivery
+                log = webhookCoalescer.coalesce(log);
+                if (log == null)
+                    return CompletableFuture.completedFuture(null);
+            }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("X-Webhook-Signature", signature);
+            if (orderedDelivery && log.getResourceId() != null && webhookLogRepository.hasEarlierPending(
+                    log.getMerchantId(), log.getResourceId(), log.getCreatedAt(), log.getId(),
+                    log.getCreatedAt().minusDays(pendingLookbackDays))) {
+                // Events for one payment go out in order: park this one until the earlier event is
+                // done, which wakes it (see releaseNext). Other payments are unaffected.
+                Duration recheck = Duration.ofMillis(blockedRecheckMs);
+                jobQueue.enqueueAfter(JobQueue.WEBHOOKS, job, recheck);
+                webhookLogRepository.updateNextRetryAt(log.getId(), log.getCreatedAt(), LocalDateTime.now().plus(recheck));
+                return CompletableFuture.completedFuture(null);
+            }
 
-            HttpEntity<String> request = new HttpEntity<>(jsonPayload, headers);
+            Integer batchSize = merchant.getWebhookBatchSize();
+            if (batchSize != null && batchSize > 1) {
+                // Batched merchants: the job is acked now rather than holding a slot until the batch
+                // goes out, so first schedule a safety-net retry in case this node dies before the flush.
+                // The batch's outcome replaces (failure) or cancels (success) it.
+                jobQueue.enqueueAfter(JobQueue.WEBHOOKS, job, Duration.ofMillis(batchSafetyDelayMs));
+                int windowMs = merchant.getWebhookBatchWindowMs() != null ? merchant.getWebhookBatchWindowMs() : 1000;
+                batcher.add(merchant, log, batchSize, windowMs);
+                return CompletableFuture.completedFuture(null);
+            }
 
-            restTemplate.postForEntity(merchant.getWebhookUrl(), request, String.class);
+            // Endpoint known to be down or asked us to back off: push the delivery back
+            // without a request, an attempt or a log write
+            Duration wait = holdFor(merchant.getId());
+            if (!wait.isZero()) {
+                jobQueue.enqueueAfter(JobQueue.WEBHOOKS, job, wait);
+                return CompletableFuture.completedFuture(null);
+            }
 
-            log.setStatus("success");
-            log.setResponseCode(200);
-            log.setLastAttemptAt(LocalDateTime.now());
-            webhookLogRepository.save(log);
+            return deliver(log, merchant);
 
         } catch (Exception e) {
-            log.setAttempts(log.getAttempts() + 1);
-            log.setResponseBody(
-                    e.getMessage() != null ? e.getMessage().substring(0, Math.min(e.getMessage().length(), 255))
-                            : "Error");
+            recordAttempt(log, null, null, e.getMessage());
+            recordFailure(merchant, log, null, e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
 
-            if (log.getAttempts() >= 5) {
-                log.setStatus("failed");
-                log.setNextRetryAt(null);
-            } else {
-                log.setStatus("pending");
-                // Calculate next retry time
-                long delaySeconds = 0;
-                if (testMode) {
-                    // Test Mode Intervals: 0s (immediate, already done), 5s, 10s, 15s, 20s
-                    // Note: Attempts passed here is AFTER increment. So attempt 1 failed ->
-                    // attempts=1. Next is attempt 2.
-                    // Logic:
-                    // Attempt 1 (initial): failed. attempts=1. Next retry (for attempt 2) in 5s.
-                    // Attempt 2: failed. attempts=2. Next retry (for attempt 3) in 10s.
-                    switch (log.getAttempts()) {
-                        case 1:
-                            delaySeconds = 5;
-                            break;
-                        case 2:
-                            delaySeconds = 10;
-                            break;
-                        case 3:
-                            delaySeconds = 15;
-                            break;
-                        case 4:
-                            delaySeconds = 20;
-                            break;
-                    }
-                } else {
-                    // Production Intervals: 1m, 5m, 30m, 2h
-                    // Attempt 1 failed. Next (Att 2) in 1 min.
-                    // Att 2 failed. Next (Att 3) in 5 min.
-                    switch (log.getAttempts()) {
-                        case 1:
-                            delaySeconds = 60;
-                            break;
-                        case 2:
-                            delaySeconds = 300;
-                            break;
-                        case 3:
-                            delaySeconds = 1800;
-                            break;
-                        case 4:
-                            delaySeconds = 7200;
-                            break;
-                    }
-                }
-                log.setNextRetryAt(LocalDateTime.now().plusSeconds(delaySeconds));
-            }
+    // Jobs queued before they carried the partition key fall back to a lookup by id across all partitions
+    private WebhookLog load(DeliverWebhookJob job) {
+        UUID id = UUID.fromString(job.getWebhookLogId());
+        return (job.getCreatedAt() != null
+                ? webhookLogRepository.findByIdAndCreatedAt(id, LocalDateTime.parse(job.getCreatedAt()))
+                : webhookLogRepository.findById(id)).orElse(null);
+    }
+
+    private static DeliverWebhookJob jobFor(WebhookLog log) {
+        return new DeliverWebhookJob(log.getId().toString(), log.getMerchantId().toString(),
+                log.getCreatedAt().toString());
+    }
+
+    private CompletableFuture<Void> deliver(WebhookLog log, Merchant merchant) {
+        String merchantId = merchant.getId();
+        try {
+            String jsonPayload = log.getPayload();
+            long startedAt = System.nanoTime();
+            // The request is in flight without holding this thread. Once the endpoint answers or the
+            // timeout fires, the outcome is recorded back on the webhook pool: the transport has only
+            // a few threads and they must not wait on the database
+            return webhookTransport.post(webhookSubscriptions.endpointFor(merchant), jsonPayload,
+                            webhookSigner.signatureHeaders(merchant, jsonPayload))
+                    .handle((response, error) -> new Outcome(response, error, elapsedMillis(startedAt)))
+                    .thenAcceptAsync(outcome -> recordOutcome(merchant, List.of(log), List.of(), outcome), outcomeExecutor);
 
-            webhookLogRepository.save(log);
+        } catch (Exception e) {
+            circuitBreaker.onFailure(merchantId);
+            recordAttempt(log, null, null, e.getMessage());
+            recordFailure(merchant, log, null, e.getMessage());
+            return CompletableFuture.completedFuture(null);
         }
     }
 
-    private String generateSignature(String data, String secret) {
+    // One signed POST whose body is a JSON array of the logs' event payloads
+    private void deliverBatch(Merchant merchant, List<WebhookLog> logs) {
+        String merchantId = merchant.getId();
+        List<DeliverWebhookJob> jobs = logs.stream()
+                .map(WebhookWorker::jobFor)
+                .collect(Collectors.toList());
+
+        Duration wait = holdFor(merchantId);
+        if (!wait.isZero()) {
+            jobs.forEach(job -> jobQueue.enqueueAfter(JobQueue.WEBHOOKS, job, wait));
+            return;
+        }
+
         try {
-            if (secret == null)
-                return "";
-            Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secret_key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-            sha256_HMAC.init(secret_key);
-            byte[] rawHmac = sha256_HMAC.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : rawHmac) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1)
-                    hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
+            String body = logs.stream().map(WebhookLog::getPayload).collect(Collectors.joining(",", "[", "]"));
+            Map<String, String> headers = webhookSigner.signatureHeaders(merchant, body);
+            headers.put("X-Webhook-Batch-Size", String.valueOf(logs.size()));
+
+            long startedAt = System.nanoTime();
+            webhookTransport.post(webhookSubscriptions.endpointFor(merchant), body, headers)
+                    .handle((response, error) -> new Outcome(response, error, elapsedMillis(startedAt)))
+                    .thenAcceptAsync(outcome -> recordOutcome(merchant, logs, jobs, outcome), outcomeExecutor);
+
         } catch (Exception e) {
-            return "";
+            circuitBreaker.onFailure(merchantId);
+            logs.forEach(l -> {
+                recordAttempt(l, null, null, e.getMessage());
+                recordFailure(merchant, l, null, e.getMessage());
+            });
+        }
+    }
+
+    // ZERO if a request may go out now; otherwise how long the merchant's deliveries are on hold,
+    // either because it asked us to back off (Retry-After) or because its circuit is open
+    private Duration holdFor(String merchantId) {
+        Duration paused = rateLimiter.pausedFor(merchantId);
+        return paused.isZero() ? circuitBreaker.tryAcquire(merchantId) : paused;
+    }
+
+    // Latency is taken on the transport thread, so time spent waiting for the pool doesn't count against the endpoint
+    private record Outcome(HttpResponse<String> response, Throwable error, long latencyMs) {}
+
+    private static long elapsedMillis(long startedAt) {
+        return (System.nanoTime() - startedAt) / 1_000_000;
+    }
+
+    private void recordOutcome(Merchant merchant, List<WebhookLog> logs, List<DeliverWebhookJob> safetyNets,
+            Outcome outcome) {
+        String merchantId = merchant.getId();
+        HttpResponse<String> response = outcome.response();
+        Throwable error = outcome.error();
+        long latencyMs = outcome.latencyMs();
+        Integer statusCode = error == null ? response.statusCode() : null;
+        String retryAfter = error == null ? response.headers().firstValue("Retry-After").orElse(null) : null;
+        rateLimiter.onResult(merchantId, latencyMs, statusCode, retryAfter);
+
+        // Recorded before the log's state moves on, so the attempt number is the one just made
+        String responseBody = error == null ? response.body() : describe(error);
+        logs.forEach(l -> recordAttempt(l, latencyMs, statusCode, responseBody));
+
+        if (statusCode != null && statusCode / 100 == 2) {
+            circuitBreaker.onSuccess(merchantId);
+            logs.forEach(l -> recordSuccess(l, statusCode));
+            jobQueue.cancelDelayed(JobQueue.WEBHOOKS, safetyNets);
+        } else if (statusCode != null && statusCode == 429 && retryAfter != null) {
+            // Throttled rather than broken: come back when the merchant asked, without using up an attempt
+            circuitBreaker.onSuccess(merchantId);
+            Duration wait = rateLimiter.pausedFor(merchantId);
+            logs.forEach(l -> recordThrottled(l, wait));
+        } else {
+            circuitBreaker.onFailure(merchantId);
+            String message = statusCode != null ? "HTTP " + statusCode : describe(error);
+            logs.forEach(l -> recordFailure(merchant, l, statusCode, message));
         }
     }
-}
\ No newline at end of file
+
+    private void recordSuccess(WebhookLog log, int statusCode) {
+        log.setStatus("success");
+        log.setResponseCode(statusCode);
+        log.setLastAttemptAt(LocalDateTime.now());
+        updateDeliveryState(log);
+        releaseNext(log);
+    }
+
+    // A log for a payment is done (delivered or given up): its successor, if parked, can go now
+    private void releaseNext(WebhookLog log) {
+        if (!orderedDelivery || log.getResourceId() == null)
+            return;
+        webhookLogRepository.findFirstByMerchantIdAndResourceIdAndStatusAndCreatedAtGreaterThanEqualOrderByCreatedAtAscIdAsc(
+                        log.getMerchantId(), log.getResourceId(), "pending", log.getCreatedAt())
+                .filter(next -> next.getNextRetryAt() != null)
+                .ifPresent(next -> jobQueue.enqueueAfter(JobQueue.WEBHOOKS, jobFor(next), Duration.ZERO));
+    }
+
+    private void recordThrottled(WebhookLog log, Duration wait) {
+        Duration delay = wait.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : wait;
+        log.setResponseCode(429);
+        log.setLastAttemptAt(LocalDateTime.now());
+        log.setNextRetryAt(LocalDateTime.now().plus(delay));
+        jobQueue.enqueueAfter(JobQueue.WEBHOOKS, jobFor(log), delay);
+        updateDeliveryState(log);
+    }
+
+    private void recordFailure(Merchant merchant, WebhookLog log, Integer statusCode, String message) {
+        RetryPolicy policy = retryPolicies.forMerchant(merchant);
+        LocalDateTime now = LocalDateTime.now();
+
+        // The wait that led up to this attempt, which decorrelated jitter grows from
+        Duration previousDelay = log.getLastAttemptAt() != null && log.getNextRetryAt() != null
+                ? Duration.between(log.getLastAttemptAt(), log.getNextRetryAt())
+                : null;
+
+        log.setAttempts(log.getAttempts() + 1);
+        log.setResponseCode(statusCode);
+        log.setLastAttemptAt(now);
+
+        if (log.getAttempts() >= policy.getMaxAttempts()) {
+            log.setStatus("failed");
+            log.setNextRetryAt(null);
+            jobQueue.cancelDelayed(JobQueue.WEBHOOKS, List.of(jobFor(log)));
+        } else {
+            log.setStatus("pending");
+            Duration delay = policy.nextDelay(log.getAttempts(), previousDelay);
+            log.setNextRetryAt(now.plus(delay));
+
+            // Put the retry on the delay queue before saving: this job is only acked once the
+            // future returned by process() completes, so a crash here redelivers it instead of losing the retry
+            jobQueue.enqueueAfter(JobQueue.WEBHOOKS, jobFor(log), delay);
+        }
+
+        updateDeliveryState(log);
+        if ("failed".equals(log.getStatus()))
+            releaseNext(log);
+    }
+
+    // Only the status columns change per attempt; the payload is never rewritten and the
+    // response details go to webhook_attempts instead
+    // Every log the worker handles was pending when loaded; one that has moved on since (merged into
+    // another delivery) is left as it is
+    private void updateDeliveryState(WebhookLog log) {
+        int updated = webhookLogRepository.updateDeliveryState(log.getId(), log.getCreatedAt(), "pending",
+                log.getStatus(), log.getAttempts(), log.getResponseCode(), log.getLastAttemptAt(), log.getNextRetryAt());
+        if (updated == 0) {
+            System.out.println("Webhook log " + log.getId() + " is no longer pending; outcome not recorded on it");
+        }
+    }
+
+    private void recordAttempt(WebhookLog log, Long latencyMs, Integer statusCode, String responseBody) {
+        WebhookAttempt attempt = new WebhookAttempt();
+        attempt.setWebhookLogId(log.getId());
+        attempt.setMerchantId(log.getMerchantId());
+        attempt.setAttemptNumber(log.getAttempts() + 1);
+        attempt.setAttemptedAt(latencyMs != null ? LocalDateTime.now().minusNanos(latencyMs * 1_000_000) : LocalDateTime.now());
+        attempt.setLatencyMs(latencyMs);
+        attempt.setStatusCode(statusCode);
+        attempt.setResponseBody(responseBody != null ? responseBody : "Error");
+        attemptRecorder.record(attempt);
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,132 @@
+package com.gateway.workers;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor for one job queue.
+ * At most {@code concurrency} jobs run at once and at most {@code queueCapacity} more wait.
+ * A job may hand back a future for work that finishes later (e.g. a simulated bank response);
+ * at most {@code maxInFlight} such jobs are outstanding. Beyond either limit {@link #submit}
+ * blocks, which pushes back on the stream reader for this queue only.
+ */
+public class WorkerPool {
+
+    private final String name;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final int maxInFlight;
+    private final boolean virtualThreads;
+    private final ExecutorService executor;
+    private final Semaphore admitted;
+    private final Semaphore running;
+    private final Semaphore inFlight;
+
+    public WorkerPool(String name, int concurrency, int queueCapacity, int maxInFlight, boolean virtualThreads) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        this.maxInFlight = maxInFlight;
+        this.admitted = new Semaphore(concurrency + queueCapacity);
+        this.inFlight = new Semaphore(maxInFlight);
+
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtualExecutor != null;
+        if (virtualExecutor != null) {
+            // One virtual thread per job; parking on this semaphore is what enforces the concurrency
+            this.executor = virtualExecutor;
+            this.running = new Semaphore(concurrency);
+        } else {
+            AtomicInteger counter = new AtomicInteger();
+            // Unbounded on purpose: admitted is the only bound. A permit comes back just before the
+            // worker thread polls for its next task, so a bounded queue here would reject jobs
+            // that submit had already admitted.
+            this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    r -> {
+                        Thread thread = new Thread(r, "worker-" + name + "-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.running = null;
+        }
+    }
+
+    public void submit(Supplier<? extends CompletionStage<?>> job) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            admitted.acquire();
+        } catch (InterruptedException e) {
+            inFlight.release();
+            throw e;
+        }
+        try {
+            executor.execute(() -> run(job));
+        } catch (RuntimeException e) {
+            admitted.release();
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    public String getName() { return name; }
+    public int getConcurrency() { return concurrency; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public boolean isVirtualThreads() { return virtualThreads; }
+    public int getMaxInFlight() { return maxInFlight; }
+    public int getInFlight() { return maxInFlight - inFlight.availablePermits(); }
+
+    // For continuations of jobs this pool already admitted (e.g. handling an HTTP response);
+    // tasks run here skip the admission and in-flight limits
+    public Executor getExecutor() { return executor; }
+
+    private void run(Supplier<? extends CompletionStage<?>> job) {
+        CompletionStage<?> pending = null;
+        try {
+            if (running != null) {
+                running.acquireUninterruptibly();
+                try {
+                    pending = job.get();
+                } finally {
+                    running.release();
+                }
+            } else {
+                pending = job.get();
+            }
+        } finally {
+            // The thread is free as soon as the synchronous part returns...
+            admitted.release();
+            // ...but the in-flight slot is held until the job's future settles
+            if (pending == null) {
+                inFlight.release();
+            } else {
+                pending.whenComplete((result, error) -> inFlight.release());
+            }
+        }
+    }
+
+    // The build targets Java 17, so virtual threads are looked up reflectively and only used on a 21+ runtime
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads are not available on this JVM, falling back to a platform thread pool");
+            return null;
+        }
+    }
+}
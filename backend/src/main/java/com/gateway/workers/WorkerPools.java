@@ -0,0 +1,53 @@
+package com.gateway.workers;
+
+import com.gateway.services.JobQueue;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One {@link WorkerPool} per job queue, configured in application.properties as
+ * {@code gateway.workers.<payments|refunds|webhooks>.concurrency / queue-capacity / max-in-flight / virtual-threads}.
+ */
+@Component
+public class WorkerPools {
+
+    private final Map<String, WorkerPool> pools = new HashMap<>();
+
+    public WorkerPools(Environment env) {
+        for (String queue : JobQueue.QUEUES) {
+            String name = queue.substring(queue.indexOf(':') + 1);
+            String prefix = "gateway.workers." + name + ".";
+
+            WorkerPool pool = new WorkerPool(name,
+                    env.getProperty(prefix + "concurrency", Integer.class, 4),
+                    env.getProperty(prefix + "queue-capacity", Integer.class, 100),
+                    env.getProperty(prefix + "max-in-flight", Integer.class, 1000),
+                    env.getProperty(prefix + "virtual-threads", Boolean.class, false));
+            pools.put(queue, pool);
+
+            System.out.println("Worker pool '" + name + "': concurrency=" + pool.getConcurrency()
+                    + ", queueCapacity=" + pool.getQueueCapacity()
+                    + ", maxInFlight=" + pool.getMaxInFlight()
+                    + ", virtualThreads=" + pool.isVirtualThreads());
+        }
+    }
+
+    public WorkerPool get(String queue) {
+        WorkerPool pool = pools.get(queue);
+        if (pool == null) {
+            throw new IllegalArgumentException("No worker pool for queue " + queue);
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (WorkerPool pool : pools.values()) {
+            pool.shutdown(10_000);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.gateway.config;
+
+import com.gateway.models.Merchant;
+import com.gateway.repositories.MerchantRepository;
+import com.gateway.services.MerchantDirectory;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behaviour of the filter, plus a before/after measurement of per-request authentication cost.
+ * The repository is in memory, so the timings leave out the database round trip; the
+ * repository calls and rows loaded per request are what the database would have seen.
+ */
+class AuthenticationFilterTest {
+
+    private static final int MERCHANTS = 1_000;
+    private static final int REQUESTS = 100_000;
+
+    private final List<Merchant> merchants = new ArrayList<>();
+    private final AtomicLong repositoryCalls = new AtomicLong();
+    private final AtomicLong rowsLoaded = new AtomicLong();
+    private final MerchantRepository repository = inMemoryRepository();
+
+    AuthenticationFilterTest() {
+        for (int i = 0; i < MERCHANTS; i++) {
+            Merchant merchant = new Merchant();
+            merchant.setId("merchant-" + i);
+            merchant.setApiKey("key_" + i);
+            merchant.setApiSecret("secret_" + i);
+            merchants.add(merchant);
+        }
+    }
+
+    @Test
+    void resolvesTheMerchantWhenKeyAndSecretMatch() throws Exception {
+        AuthenticationFilter filter = filter(true);
+        MockHttpServletRequest request = request("key_7", "secret_7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertEquals(200, response.getStatus());
+        Merchant merchant = (Merchant) request.getAttribute(AuthenticationFilter.MERCHANT_ATTRIBUTE);
+        assertEquals("merchant-7", merchant.getId());
+    }
+
+    @Test
+    void rejectsAWrongOrMissingSecret() throws Exception {
+        AuthenticationFilter filter = filter(true);
+        for (String secret : new String[] {"secret_8", null}) {
+            MockHttpServletRequest request = request("key_7", secret);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+
+            filter.doFilter(request, response, chain);
+
+            assertEquals(401, response.getStatus());
+            assertNull(chain.getRequest(), "request reached the controller");
+        }
+    }
+
+    @Test
+    void keyOnlyCallsNeedTheSecretCheckTurnedOff() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter(false).doFilter(request("key_7", null), response, new MockFilterChain());
+        assertEquals(200, response.getStatus());
+
+        response = new MockHttpServletResponse();
+        filter(false).doFilter(request("key_7", "wrong"), response, new MockFilterChain());
+        assertEquals(401, response.getStatus());
+    }
+
+    @Test
+    void perRequestAuthenticationCost() throws Exception {
+        // Before: each controller loaded every merchant and scanned for the key
+        repositoryCalls.set(0);
+        rowsLoaded.set(0);
+        long started = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            String apiKey = "key_" + (i % MERCHANTS);
+            Merchant merchant = repository.findAll().stream()
+                    .filter(m -> m.getApiKey().equals(apiKey))
+                    .findFirst()
+                    .orElse(null);
+            assertEquals(apiKey, merchant.getApiKey());
+        }
+        report("before (findAll scan)", started);
+        assertEquals(REQUESTS, repositoryCalls.get());
+
+        // After: the filter resolves the merchant once per request from the directory cache
+        AuthenticationFilter filter = filter(true);
+        repositoryCalls.set(0);
+        rowsLoaded.set(0);
+        started = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            int n = i % MERCHANTS;
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request("key_" + n, "secret_" + n), response, new MockFilterChain());
+            assertEquals(200, response.getStatus());
+        }
+        report("after (filter + cache)", started);
+        // Only the first request per merchant reaches the repository
+        assertTrue(repositoryCalls.get() <= MERCHANTS, repositoryCalls.get() + " repository calls");
+    }
+
+    private void report(String label, long startedNanos) {
+        double nanosPerRequest = (System.nanoTime() - startedNanos) / (double) REQUESTS;
+        System.out.printf("Auth %-24s %8.0f ns/request, %.3f repository calls and %.1f rows per request%n",
+                label, nanosPerRequest, repositoryCalls.get() / (double) REQUESTS, rowsLoaded.get() / (double) REQUESTS);
+    }
+
+    private AuthenticationFilter filter(boolean requireSecret) {
+        AuthenticationFilter filter = new AuthenticationFilter(new MerchantDirectory(repository, null, 300, 10_000));
+        ReflectionTestUtils.setField(filter, "requireSecret", requireSecret);
+        return filter;
+    }
+
+    private static MockHttpServletRequest request(String apiKey, String apiSecret) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/payments");
+        request.addHeader("X-Api-Key", apiKey);
+        if (apiSecret != null) {
+            request.addHeader("X-Api-Secret", apiSecret);
+        }
+        return request;
+    }
+
+    // Answers the lookups the old controllers and MerchantDirectory use, loading copies like JPA would
+    private MerchantRepository inMemoryRepository() {
+        return (MerchantRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {MerchantRepository.class}, (proxy, method, args) -> {
+                    repositoryCalls.incrementAndGet();
+                    switch (method.getName()) {
+                        case "findAll":
+                            rowsLoaded.addAndGet(merchants.size());
+                            return merchants.stream().map(AuthenticationFilterTest::copy).toList();
+                        case "findByApiKey":
+                            return merchants.stream().filter(m -> m.getApiKey().equals(args[0])).findFirst()
+                                    .map(m -> {
+                                        rowsLoaded.incrementAndGet();
+                                        return copy(m);
+                                    });
+                        case "findById":
+                            return merchants.stream().filter(m -> m.getId().equals(args[0])).findFirst()
+                                    .map(AuthenticationFilterTest::copy);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Merchant copy(Merchant source) {
+        Merchant merchant = new Merchant();
+        merchant.setId(source.getId());
+        merchant.setApiKey(source.getApiKey());
+        merchant.setApiSecret(source.getApiSecret());
+        return merchant;
+    }
+}
@@ -0,0 +1,81 @@
+package com.gateway.models;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Inserts/sec for new payments, one transaction per payment as on the payment-creation path.
+ * Before: the entity could not tell it was new, so save() merged it (SELECT, then INSERT).
+ * After: Persistable.isNew() sends it straight to persist (INSERT only), with JDBC batching on.
+ * Needs a PostgreSQL database, e.g. the docker-compose one:
+ * BENCHMARK_DB_URL=jdbc:postgresql://localhost:5432/payment_gateway mvn test -Dtest=PaymentInsertBenchmarkTest
+ */
+@EnabledIfEnvironmentVariable(named = "BENCHMARK_DB_URL", matches = ".+")
+class PaymentInsertBenchmarkTest {
+
+    private static final int PAYMENTS = 5_000;
+
+    @Test
+    void insertsPerSecond() {
+        double before = run("before (merge)", 1, Session::merge);
+        double after = run("after (persist, batched)", 50, Session::persist);
+        System.out.printf("Payment inserts: %.1fx%n", after / before);
+    }
+
+    private static double run(String label, int batchSize, BiConsumer<Session, Payment> save) {
+        String url = System.getenv("BENCHMARK_DB_URL");
+        try (SessionFactory sessionFactory = new Configuration()
+                .addAnnotatedClass(Payment.class)
+                .setProperty("hibernate.connection.url", url.contains("?") ? url : url + "?reWriteBatchedInserts=true")
+                .setProperty("hibernate.connection.username", System.getenv().getOrDefault("BENCHMARK_DB_USER", "gateway_user"))
+                .setProperty("hibernate.connection.password", System.getenv().getOrDefault("BENCHMARK_DB_PASSWORD", "gateway_pass"))
+                .setProperty("hibernate.hbm2ddl.auto", "update")
+                .setProperty("hibernate.jdbc.batch_size", String.valueOf(batchSize))
+                .setProperty("hibernate.order_inserts", "true")
+                .setProperty("hibernate.generate_statistics", "true")
+                .buildSessionFactory()) {
+
+            String prefix = "pay_bench_" + UUID.randomUUID().toString().substring(0, 8) + "_";
+            Statistics statistics = sessionFactory.getStatistics();
+            statistics.clear();
+
+            long started = System.nanoTime();
+            for (int i = 0; i < PAYMENTS; i++) {
+                Payment payment = newPayment(prefix + i);
+                sessionFactory.inTransaction(session -> save.accept(session, payment));
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            long statements = statistics.getPrepareStatementCount();
+
+            sessionFactory.inTransaction(session -> session.createMutationQuery(
+                    "delete from Payment where id like :prefix").setParameter("prefix", prefix + "%").executeUpdate());
+
+            assertEquals(PAYMENTS, statistics.getEntityInsertCount());
+            System.out.printf("Payment inserts %-26s %6.0f/sec, %.2f statements per payment%n",
+                    label, PAYMENTS / seconds, statements / (double) PAYMENTS);
+            return PAYMENTS / seconds;
+        }
+    }
+
+    private static Payment newPayment(String id) {
+        Payment payment = new Payment();
+        payment.setId(id);
+        payment.setOrderId("order_bench");
+        payment.setMerchantId("merchant_bench");
+        payment.setAmount(50_000L);
+        payment.setCurrency("INR");
+        payment.setMethod("upi");
+        payment.setVpa("user@paytm");
+        payment.setStatus("processing");
+        return payment;
+    }
+}
@@ -0,0 +1,42 @@
+package com.gateway.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BankSimulatorTest {
+
+    @Test
+    void slowCompletionsDoNotHoldUpTheTimer() throws Exception {
+        // One timer thread, and every completion blocks like a slow commit
+        BankSimulator bank = new BankSimulator(1);
+        ExecutorService workers = Executors.newFixedThreadPool(50);
+        CountDownLatch done = new CountDownLatch(50);
+        AtomicLong latestStartMs = new AtomicLong();
+
+        long started = System.currentTimeMillis();
+        for (int i = 0; i < 50; i++) {
+            bank.respondAfter(10, workers, () -> {
+                latestStartMs.accumulateAndGet(System.currentTimeMillis() - started, Math::max);
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS), "completions did not finish");
+        // Run on the timer thread, the last completion would have started after 49 * 200ms
+        assertTrue(latestStartMs.get() < 1000, "last completion started after " + latestStartMs.get() + "ms");
+        workers.shutdownNow();
+        bank.shutdown();
+    }
+}
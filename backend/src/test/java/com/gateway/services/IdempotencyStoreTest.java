@@ -0,0 +1,113 @@
+package com.gateway.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Claim, wait and replay against a real Redis, plus the replay latency a retried request sees
+ * (the goal is well under a millisecond on a local Redis). Needs a Redis, e.g. the docker-compose one:
+ * BENCHMARK_REDIS_URL=redis://localhost:6379 mvn test -Dtest=IdempotencyStoreTest
+ */
+@EnabledIfEnvironmentVariable(named = "BENCHMARK_REDIS_URL", matches = ".+")
+class IdempotencyStoreTest {
+
+    private static final byte[] BODY = "{\"id\":\"pay_H8sK3jD9s2L1pQr\",\"status\":\"processing\"}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final int WARMUP = 1_000;
+    private static final int REPLAYS = 10_000;
+
+    private final String merchantId = "merchant_test_" + UUID.randomUUID();
+    private LettuceConnectionFactory connectionFactory;
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void connect() {
+        URI url = URI.create(System.getenv("BENCHMARK_REDIS_URL"));
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+                url.getHost(), url.getPort() > 0 ? url.getPort() : 6379));
+        connectionFactory.afterPropertiesSet();
+        // 1s in-progress TTL so the expiry case doesn't take long; waiters give up after 2s
+        store = new IdempotencyStore(connectionFactory, 1, 1, 2000, 20);
+    }
+
+    @AfterEach
+    void disconnect() {
+        StringRedisTemplate redis = new StringRedisTemplate(connectionFactory);
+        redis.delete(redis.keys("idempotency:" + merchantId + ":*"));
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void duplicateWaitsForTheFirstRequestAndReplaysItsResponse() throws Exception {
+        IdempotencyStore.Claim first = store.claim(merchantId, "key-1");
+        assertTrue(first.isAcquired());
+
+        CompletableFuture<IdempotencyStore.Claim> duplicate =
+                CompletableFuture.supplyAsync(() -> store.claim(merchantId, "key-1"));
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone(), "duplicate did not wait for the first request");
+
+        assertTrue(store.complete(first, 201, BODY));
+        IdempotencyStore.Claim replayed = duplicate.get(2, TimeUnit.SECONDS);
+        assertTrue(replayed.isCompleted());
+        assertEquals(201, replayed.response().status());
+        assertArrayEquals(BODY, replayed.response().body());
+    }
+
+    @Test
+    void releasedKeyCanBeClaimedAgain() {
+        IdempotencyStore.Claim first = store.claim(merchantId, "key-2");
+        store.release(first);
+        assertTrue(store.claim(merchantId, "key-2").isAcquired());
+    }
+
+    @Test
+    void expiredClaimDoesNotOverwriteTheNextHolder() throws Exception {
+        IdempotencyStore.Claim first = store.claim(merchantId, "key-3");
+        Thread.sleep(1_100);
+        IdempotencyStore.Claim second = store.claim(merchantId, "key-3");
+        assertTrue(second.isAcquired());
+
+        assertFalse(store.complete(first, 201, BODY));
+        assertTrue(store.complete(second, 201, "{\"id\":\"pay_second\"}".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("{\"id\":\"pay_second\"}",
+                new String(store.claim(merchantId, "key-3").response().body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void replayLatency() {
+        store.complete(store.claim(merchantId, "key-4"), 201, BODY);
+        for (int i = 0; i < WARMUP; i++) {
+            store.claim(merchantId, "key-4");
+        }
+        long[] nanos = new long[REPLAYS];
+        for (int i = 0; i < REPLAYS; i++) {
+            long started = System.nanoTime();
+            IdempotencyStore.Claim claim = store.claim(merchantId, "key-4");
+            nanos[i] = System.nanoTime() - started;
+            assertTrue(claim.isCompleted());
+        }
+        Arrays.sort(nanos);
+        long p50 = nanos[REPLAYS / 2] / 1_000;
+        long p99 = nanos[REPLAYS * 99 / 100] / 1_000;
+        System.out.printf("Idempotent replay (%d-byte body): p50 %d us, p99 %d us%n", BODY.length, p50, p99);
+        assertTrue(p50 < 1_000, "median replay took " + p50 + " us");
+    }
+}
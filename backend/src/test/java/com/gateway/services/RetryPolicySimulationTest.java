@@ -0,0 +1,98 @@
+package com.gateway.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays a merchant outage: LOGS deliveries fail within the same second, every retry fails until
+ * the endpoint comes back after OUTAGE, and each log follows its policy until it is delivered or
+ * runs out of attempts. Prints the busiest seconds of retry traffic for each policy.
+ */
+class RetryPolicySimulationTest {
+
+    private static final int LOGS = 10_000;
+    private static final Duration OUTAGE = Duration.ofMinutes(10);
+
+    // The schedule the worker used before RetryPolicy: 60s, 5m, 30m, 2h
+    private static final RetryPolicy PREVIOUS = new FixedRetryPolicy(List.of(
+            Duration.ofSeconds(60), Duration.ofSeconds(300), Duration.ofSeconds(1800), Duration.ofSeconds(7200)));
+
+    @Test
+    void fixedScheduleRetriesEveryLogInTheSameSecond() {
+        Result result = simulate("previous fixed", PREVIOUS);
+        assertEquals(LOGS, result.peakPerSecond);
+        assertEquals(0, result.gaveUp);
+    }
+
+    @Test
+    void fullJitterSpreadsTheRetries() {
+        Result result = simulate("FULL jitter", defaults(ExponentialRetryPolicy.Jitter.FULL));
+        assertTrue(result.peakPerSecond < LOGS / 20, "peak " + result.peakPerSecond + "/s");
+    }
+
+    @Test
+    void decorrelatedJitterSpreadsTheRetries() {
+        Result result = simulate("DECORRELATED jitter", defaults(ExponentialRetryPolicy.Jitter.DECORRELATED));
+        assertTrue(result.peakPerSecond < LOGS / 20, "peak " + result.peakPerSecond + "/s");
+    }
+
+    @Test
+    void fullJitterFirstRetryIsBetweenMinAndBase() {
+        RetryPolicy policy = defaults(ExponentialRetryPolicy.Jitter.FULL);
+        for (int i = 0; i < 10_000; i++) {
+            long delay = policy.nextDelay(1, null).toSeconds();
+            assertTrue(delay >= 5 && delay <= 60, "first retry after " + delay + "s");
+        }
+    }
+
+    // The shipped defaults from application.properties
+    private static RetryPolicy defaults(ExponentialRetryPolicy.Jitter jitter) {
+        return new RetryPolicies(false, jitter, 60, 7200, 5, 5, 5).forMerchant(null);
+    }
+
+    private static Result simulate(String label, RetryPolicy policy) {
+        Random random = new Random(42);
+        TreeMap<Long, Integer> retriesPerSecond = new TreeMap<>();
+        long outageEndMs = OUTAGE.toMillis();
+        int gaveUp = 0;
+        long lastDeliveryMs = 0;
+
+        for (int log = 0; log < LOGS; log++) {
+            long now = random.nextInt(1000);
+            int attempts = 1;
+            Duration previousDelay = null;
+            while (now < outageEndMs) {
+                if (attempts >= policy.getMaxAttempts()) {
+                    gaveUp++;
+                    break;
+                }
+                Duration delay = policy.nextDelay(attempts, previousDelay);
+                now += delay.toMillis();
+                previousDelay = delay;
+                attempts++;
+                retriesPerSecond.merge(now / 1000, 1, Integer::sum);
+            }
+            if (now >= outageEndMs) {
+                lastDeliveryMs = Math.max(lastDeliveryMs, now);
+            }
+        }
+
+        int peak = retriesPerSecond.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        System.out.printf("%-20s peak %5d retries/s, %4d gave up, last delivered after %ds%n",
+                label, peak, gaveUp, lastDeliveryMs / 1000);
+        retriesPerSecond.entrySet().stream()
+                .sorted((a, b) -> b.getValue() - a.getValue())
+                .limit(3)
+                .forEach(e -> System.out.printf("%-20s   t=%ds: %d retries%n", "", e.getKey(), e.getValue()));
+        return new Result(peak, gaveUp);
+    }
+
+    private record Result(int peakPerSecond, int gaveUp) {}
+}
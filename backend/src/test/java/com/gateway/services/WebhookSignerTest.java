@@ -0,0 +1,100 @@
+package com.gateway.services;
+
+import com.gateway.models.Merchant;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Signatures must match what receivers verified before the signer existed, and the rotation
+ * header must follow the window. The benchmark compares the signer with the code it replaced
+ * (a new Mac and key per call, hex via Integer.toHexString); JMH is not among the build's
+ * dependencies, so it is a warmed-up timing loop instead.
+ */
+class WebhookSignerTest {
+
+    private static final String SECRET = "whsec_test_abc123";
+    private static final String PAYLOAD = webhookPayload();
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 200_000;
+
+    private final WebhookSigner signer = new WebhookSigner(3600, 10_000);
+
+    @Test
+    void matchesThePreviousSignatures() {
+        for (String payload : new String[] {"", "{}", PAYLOAD, "événement ₹"}) {
+            assertEquals(previousSignature(payload, SECRET), signer.sign(payload, SECRET));
+        }
+    }
+
+    @Test
+    void signsWithThePreviousSecretOnlyInsideTheRotationWindow() {
+        Merchant merchant = new Merchant();
+        merchant.setWebhookSecret("whsec_new");
+        merchant.setPreviousWebhookSecret(SECRET);
+        merchant.setPreviousWebhookSecretExpiresAt(LocalDateTime.now().plusHours(1));
+
+        Map<String, String> headers = signer.signatureHeaders(merchant, PAYLOAD);
+        assertEquals(previousSignature(PAYLOAD, "whsec_new"), headers.get(WebhookSigner.SIGNATURE_HEADER));
+        assertEquals(previousSignature(PAYLOAD, SECRET), headers.get(WebhookSigner.PREVIOUS_SIGNATURE_HEADER));
+
+        merchant.setPreviousWebhookSecretExpiresAt(LocalDateTime.now().minusSeconds(1));
+        assertFalse(signer.signatureHeaders(merchant, PAYLOAD).containsKey(WebhookSigner.PREVIOUS_SIGNATURE_HEADER));
+    }
+
+    @Test
+    void signingCost() {
+        double before = nanosPerSignature(WebhookSignerTest::previousSignature);
+        double after = nanosPerSignature(signer::sign);
+        System.out.printf("Webhook signing (%d-byte payload): before %.0f ns/op, after %.0f ns/op (%.1fx)%n",
+                PAYLOAD.length(), before, after, before / after);
+    }
+
+    private static double nanosPerSignature(BiFunction<String, String, String> sign) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += sign.apply(PAYLOAD, SECRET).length();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += sign.apply(PAYLOAD, SECRET).length();
+        }
+        double nanos = (System.nanoTime() - started) / (double) ITERATIONS;
+        assertEquals(64L * (WARMUP + ITERATIONS), sink);
+        return nanos;
+    }
+
+    // The implementation WebhookSigner replaced
+    private static String previousSignature(String payload, String secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] hash = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hash) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) hexString.append('0');
+                hexString.append(hex);
+            }
+            return hexString.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // A payment.success event of typical size
+    private static String webhookPayload() {
+        return "{\"event\":\"payment.success\",\"timestamp\":1705315870,\"data\":{\"payment\":{"
+                + "\"id\":\"pay_H8sK3jD9s2L1pQr\",\"order_id\":\"order_NXhj67fGH2jk9mPq\",\"amount\":50000,"
+                + "\"currency\":\"INR\",\"method\":\"upi\",\"vpa\":\"user@paytm\",\"status\":\"success\","
+                + "\"created_at\":\"2024-01-15T10:31:00Z\",\"updated_at\":\"2024-01-15T10:31:10Z\"}}}";
+    }
+}
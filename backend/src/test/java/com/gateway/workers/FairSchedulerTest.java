@@ -0,0 +1,98 @@
+package com.gateway.workers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FairSchedulerTest {
+
+    @Test
+    void taskIsRequeuedWhenThePoolRejectsIt() throws Exception {
+        AtomicBoolean rejectNext = new AtomicBoolean(true);
+        WorkerPool pool = new WorkerPool("webhooks", 1, 1, 10, false) {
+            @Override
+            public void submit(Supplier<? extends CompletionStage<?>> job) throws InterruptedException {
+                if (rejectNext.getAndSet(false)) {
+                    throw new RejectedExecutionException("shutting down");
+                }
+                super.submit(job);
+            }
+        };
+        FairScheduler scheduler = new FairScheduler(pool, 10, key -> 1, 10, 10);
+        List<String> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+
+        assertTrue(scheduler.offer("m1", () -> complete("first", ran, done)));
+        assertEquals(1, scheduler.getBacklog("m1"));
+
+        assertTrue(scheduler.offer("m1", () -> complete("second", ran, done)));
+        assertTrue(done.await(5, TimeUnit.SECONDS), "tasks did not run");
+        assertEquals(List.of("first", "second"), ran);
+        pool.shutdown(1000);
+    }
+
+    @Test
+    void keysShareThePoolRoundRobin() throws Exception {
+        WorkerPool pool = new WorkerPool("webhooks", 1, 1, 10, false);
+        FairScheduler scheduler = new FairScheduler(pool, 1, key -> 1, 10, 10);
+        List<String> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(5);
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+
+        // Holds the only slot so the rest queue up behind it
+        scheduler.offer("hold", () -> gate);
+        scheduler.offer("m1", () -> complete("m1-a", ran, done));
+        scheduler.offer("m1", () -> complete("m1-b", ran, done));
+        scheduler.offer("m1", () -> complete("m1-c", ran, done));
+        scheduler.offer("m2", () -> complete("m2-a", ran, done));
+        scheduler.offer("m2", () -> complete("m2-b", ran, done));
+        gate.complete(null);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS), "tasks did not run");
+        assertEquals(List.of("m1-a", "m2-a", "m1-b", "m2-b", "m1-c"), ran);
+        pool.shutdown(1000);
+    }
+
+    @Test
+    void completionCallbacksDoNotBlockOnAFullPool() throws Exception {
+        // Fewer in-flight slots than the scheduler may dispatch, and a single "HTTP client" thread
+        // completing every task: submitting the next task from that thread would block it for good
+        WorkerPool pool = new WorkerPool("webhooks", 1, 1, 2, false);
+        FairScheduler scheduler = new FairScheduler(pool, 10, key -> 2, 100, 100);
+        ScheduledExecutorService client = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch done = new CountDownLatch(200);
+
+        for (int i = 0; i < 200; i++) {
+            scheduler.offer("m" + (i % 4), () -> {
+                CompletableFuture<Void> response = new CompletableFuture<>();
+                client.schedule(() -> {
+                    response.complete(null);
+                    done.countDown();
+                }, 100, TimeUnit.MICROSECONDS);
+                return response;
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS), "scheduler stalled with " + done.getCount() + " tasks left");
+        client.shutdownNow();
+        pool.shutdown(1000);
+    }
+
+    private static CompletionStage<Void> complete(String name, List<String> ran, CountDownLatch done) {
+        ran.add(name);
+        done.countDown();
+        return CompletableFuture.completedFuture(null);
+    }
+}
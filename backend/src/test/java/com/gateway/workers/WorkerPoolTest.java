@@ -0,0 +1,116 @@
+package com.gateway.workers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Admission and in-flight limits, plus a throughput sweep over concurrency levels with jobs that
+ * block for JOB_LATENCY_MS like a bank or database call, in both thread modes. Virtual threads need
+ * a Java 21+ runtime; on an older one the pool falls back to platform threads and the sweep says so.
+ */
+class WorkerPoolTest {
+
+    private static final int JOBS = 100_000;
+
+    // Stand-in for a blocking bank or database call made by a job
+    private static final long JOB_LATENCY_MS = 5;
+    private static final int[] CONCURRENCY_LEVELS = {1, 2, 4, 8, 16, 32, 64};
+
+    @Test
+    void admittedJobsAreNeverRejected() throws Exception {
+        WorkerPool pool = new WorkerPool("payments", 2, 4, 1000, false);
+        CountDownLatch done = new CountDownLatch(JOBS);
+        int rejected = 0;
+
+        for (int i = 0; i < JOBS; i++) {
+            try {
+                pool.submit(() -> {
+                    done.countDown();
+                    return null;
+                });
+            } catch (RejectedExecutionException e) {
+                rejected++;
+                done.countDown();
+            }
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS), "jobs did not finish");
+
+        assertEquals(0, rejected);
+        assertEquals(0, pool.getInFlight());
+        pool.shutdown(1000);
+    }
+
+    @Test
+    void inFlightLimitHoldsForAsyncJobs() throws Exception {
+        WorkerPool pool = new WorkerPool("payments", 2, 4, 50, false);
+        ScheduledExecutorService bank = Executors.newScheduledThreadPool(2);
+        CountDownLatch done = new CountDownLatch(JOBS / 10);
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        for (int i = 0; i < JOBS / 10; i++) {
+            pool.submit(() -> {
+                peak.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+                CompletableFuture<Void> response = new CompletableFuture<>();
+                bank.schedule(() -> {
+                    outstanding.decrementAndGet();
+                    response.complete(null);
+                    done.countDown();
+                }, 100, TimeUnit.MICROSECONDS);
+                return response;
+            });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS), "jobs did not finish");
+
+        assertTrue(peak.get() <= 50, "peak in flight was " + peak.get());
+        bank.shutdownNow();
+        pool.shutdown(1000);
+    }
+
+    @Test
+    void throughputGrowsWithConcurrency() throws Exception {
+        for (boolean virtualThreads : new boolean[] {false, true}) {
+            double previous = 0;
+            for (int concurrency : CONCURRENCY_LEVELS) {
+                WorkerPool pool = new WorkerPool("payments", concurrency, 100, 1000, virtualThreads);
+                double jobsPerSecond = blockingJobsPerSecond(pool, concurrency * 40);
+                System.out.printf("WorkerPool %-8s (ran on %-8s) concurrency %2d: %6.0f jobs/sec, ceiling %d%n",
+                        virtualThreads ? "virtual" : "platform", pool.isVirtualThreads() ? "virtual" : "platform",
+                        concurrency, jobsPerSecond, concurrency * 1000 / JOB_LATENCY_MS);
+                pool.shutdown(1000);
+
+                // Blocking jobs are bound by the number of slots, so doubling them has to pay off
+                assertTrue(jobsPerSecond > previous, concurrency + " slots were not faster than " + concurrency / 2);
+                previous = jobsPerSecond;
+            }
+        }
+    }
+
+    private static double blockingJobsPerSecond(WorkerPool pool, int jobs) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(jobs);
+        long started = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            pool.submit(() -> {
+                try {
+                    Thread.sleep(JOB_LATENCY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+                return null;
+            });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS), "jobs did not finish");
+        return jobs / ((System.nanoTime() - started) / 1e9);
+    }
+}
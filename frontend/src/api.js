@@ -8,12 +8,16 @@ const api = axios.create({
   }
 });
 
-// Automatically add the API Key from localStorage to every request
+// Automatically add the API credentials from localStorage to every request
 api.interceptors.request.use((config) => {
   const apiKey = localStorage.getItem('merchant_api_key');
+  const apiSecret = localStorage.getItem('merchant_api_secret');
   if (apiKey) {
     config.headers['X-Api-Key'] = apiKey;
   }
+  if (apiSecret) {
+    config.headers['X-Api-Secret'] = apiSecret;
+  }
   return config;
 }, (error) => {
   return Promise.reject(error);
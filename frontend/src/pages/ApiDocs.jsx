@@ -3,6 +3,7 @@ import { useState } from 'react';
 export default function ApiDocs() {
   const [copied, setCopied] = useState('');
   const apiKey = localStorage.getItem('merchant_api_key') || 'key_test_...';
+  const apiSecret = localStorage.getItem('merchant_api_secret') || 'secret_test_...';
   
   const copyToClipboard = (text, section) => {
     navigator.clipboard.writeText(text);
@@ -13,6 +14,7 @@ export default function ApiDocs() {
   const codeSnippets = {
     createOrder: `curl -X POST http://localhost:8000/api/v1/orders \\
   -H "X-Api-Key: ${apiKey}" \\
+  -H "X-Api-Secret: ${apiSecret}" \\
   -H "Content-Type: application/json" \\
   -d '{
     "amount": 5000,
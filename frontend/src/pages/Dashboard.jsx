@@ -22,24 +22,22 @@ export default function Dashboard() {
 
   const calculateStats = async () => {
     try {
-      // Fetch all payments to calculate stats locally
-      const res = await axios.get('http://localhost:8000/api/v1/payments', {
+      // Totals are aggregated by the server
+      const res = await axios.get('http://localhost:8000/api/v1/payments/stats', {
         headers: { 'X-Api-Key': apiKey, 'X-Api-Secret': apiSecret }
       });
-      
-      const payments = res.data;
-      const total = payments.length;
-      
+
+      const total = res.data.total_count;
+
       if (total === 0) {
         setStats({ totalVolume: 0, successRate: 0, totalCount: 0, successCount: 0 });
       } else {
-        const successful = payments.filter(p => p.status === 'success');
-        const successCount = successful.length;
-        
-        // Calculate Total Volume (Sum of successful amounts)
+        const successCount = res.data.success_count;
+
+        // Total Volume (Sum of successful amounts)
         // Assuming amount is in cents/paisa, divide by 100 for display
-        const volume = successful.reduce((sum, p) => sum + (p.amount || 0), 0) / 100;
-        
+        const volume = res.data.success_amount / 100;
+
         // Calculate Success Rate
         const rate = (successCount / total) * 100;
 
@@ -4,6 +4,11 @@ import axios from 'axios';
 export default function Transactions() {
   const [payments, setPayments] = useState([]);
   const [refundInputs, setRefundInputs] = useState({}); // New state for refund inputs
+  // Keyset paging: cursors[i] fetches page i (null for the first page)
+  const [cursors, setCursors] = useState([null]);
+  const [page, setPage] = useState(0);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [filters, setFilters] = useState({ status: '', method: '', order_id: '' });
 
   const apiKey = localStorage.getItem('merchant_api_key');
   const apiSecret = localStorage.getItem('merchant_api_secret');
@@ -37,19 +42,39 @@ export default function Transactions() {
     }
   };
 
-  const fetchPayments = async () => {
+  // Filtering and ordering (newest first) happen on the server, one page at a time
+  const fetchPayments = async (pageIndex = page, pageCursors = cursors, pageFilters = filters) => {
     try {
+      const params = { limit: 20 };
+      if (pageCursors[pageIndex]) params.cursor = pageCursors[pageIndex];
+      Object.entries(pageFilters).forEach(([name, value]) => {
+        if (value) params[name] = value;
+      });
       const res = await axios.get('http://localhost:8000/api/v1/payments', {
+        params,
         headers: { 'X-Api-Key': apiKey, 'X-Api-Secret': apiSecret }
       });
-      // Sort by newest first based on ID
-      const sorted = res.data.sort((a, b) => b.id.localeCompare(a.id));
-      setPayments(sorted);
+      setPayments(res.data.data || []);
+      setNextCursor(res.data.next_cursor);
+      setPage(pageIndex);
     } catch (err) {
       console.error(err);
     }
   };
 
+  const goToPage = (pageIndex) => {
+    const pageCursors = pageIndex > page ? [...cursors.slice(0, pageIndex), nextCursor] : cursors;
+    setCursors(pageCursors);
+    fetchPayments(pageIndex, pageCursors);
+  };
+
+  const handleFilterChange = (name, value) => {
+    const pageFilters = { ...filters, [name]: value };
+    setFilters(pageFilters);
+    setCursors([null]);
+    fetchPayments(0, [null], pageFilters);
+  };
+
   useEffect(() => {
     fetchPayments();
   }, []);
@@ -96,7 +121,28 @@ export default function Transactions() {
     <div className="card">
       <div style={{ display: 'flex', justifyContent: 'space-between', alignItems: 'center' }}>
         <h2>Transaction History</h2>
-        <button onClick={fetchPayments} style={{ padding: '5px 10px', fontSize: '14px' }}>Refresh</button>
+        <button onClick={() => fetchPayments()} style={{ padding: '5px 10px', fontSize: '14px' }}>Refresh</button>
+      </div>
+
+      <div style={{ display: 'flex', gap: '10px', marginBottom: '15px' }}>
+        <select data-test-id="status-filter" value={filters.status} onChange={(e) => handleFilterChange('status', e.target.value)}>
+          <option value="">All statuses</option>
+          <option value="pending">pending</option>
+          <option value="success">success</option>
+          <option value="failed">failed</option>
+        </select>
+        <select data-test-id="method-filter" value={filters.method} onChange={(e) => handleFilterChange('method', e.target.value)}>
+          <option value="">All methods</option>
+          <option value="upi">upi</option>
+          <option value="card">card</option>
+        </select>
+        <input
+          data-test-id="order-id-filter"
+          placeholder="Order ID"
+          value={filters.order_id}
+          onChange={(e) => handleFilterChange('order_id', e.target.value)}
+          style={{ padding: '4px' }}
+        />
       </div>
 
       <table data-test-id="transactions-table">
@@ -185,6 +231,12 @@ export default function Transactions() {
           ))}
         </tbody>
       </table>
+
+      <div style={{ display: 'flex', justifyContent: 'flex-end', gap: '10px', alignItems: 'center', marginTop: '10px', fontSize: '14px' }}>
+        <button data-test-id="transactions-prev" disabled={page === 0} onClick={() => goToPage(page - 1)}>Previous</button>
+        <span>Page {page + 1}</span>
+        <button data-test-id="transactions-next" disabled={!nextCursor} onClick={() => goToPage(page + 1)}>Next</button>
+      </div>
     </div>
   );
 }
\ No newline at end of file
@@ -5,6 +5,13 @@ export default function WebhookConfig() {
   const [logs, setLogs] = useState([]);
   const [webhookUrl, setWebhookUrl] = useState('');
   const [secret, setSecret] = useState('');
+  const [circuit, setCircuit] = useState(null);
+  // Keyset paging: cursors[i] fetches page i (null for the first page)
+  const [cursors, setCursors] = useState([null]);
+  const [page, setPage] = useState(0);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [total, setTotal] = useState(null);
+  const [filters, setFilters] = useState({ event: '', status: '' });
 
   const apiKey = localStorage.getItem('merchant_api_key');
   const apiSecret = localStorage.getItem('merchant_api_secret');
@@ -12,20 +19,63 @@ export default function WebhookConfig() {
   // Load logs on mount
   useEffect(() => {
     fetchLogs();
-    // In a real app, you would also fetch the current Webhook URL here
-    // e.g. axios.get('/merchant/profile')...
+    fetchSubscription();
   }, []);
 
-  const fetchLogs = async () => {
+  const fetchSubscription = async () => {
     try {
-      const res = await axios.get('http://localhost:8000/api/v1/webhooks?limit=20', {
+      const res = await axios.get('http://localhost:8000/api/v1/webhooks/subscription', {
         headers: { 'X-Api-Key': apiKey, 'X-Api-Secret': apiSecret }
       });
-      // Handle response structure: { data: [...], total: ... }
+      setWebhookUrl(res.data.url || '');
+    } catch (err) {
+      console.error("Failed to fetch subscription", err);
+    }
+  };
+
+  const fetchLogs = async (pageIndex = page, pageCursors = cursors, pageFilters = filters) => {
+    try {
+      const params = { limit: 20, count: 'approximate' };
+      if (pageCursors[pageIndex]) params.cursor = pageCursors[pageIndex];
+      if (pageFilters.event) params.event = pageFilters.event;
+      if (pageFilters.status) params.status = pageFilters.status;
+      const res = await axios.get('http://localhost:8000/api/v1/webhooks', {
+        params,
+        headers: { 'X-Api-Key': apiKey, 'X-Api-Secret': apiSecret }
+      });
+      // Handle response structure: { data: [...], next_cursor: ..., total: ... }
       setLogs(res.data.data || []);
+      setNextCursor(res.data.next_cursor);
+      setTotal(res.data.total);
+      setPage(pageIndex);
     } catch (err) {
       console.error("Failed to fetch logs", err);
     }
+    fetchCircuit();
+  };
+
+  const fetchCircuit = async () => {
+    try {
+      const res = await axios.get('http://localhost:8000/api/v1/webhooks/circuit', {
+        headers: { 'X-Api-Key': apiKey, 'X-Api-Secret': apiSecret }
+      });
+      setCircuit(res.data);
+    } catch (err) {
+      console.error("Failed to fetch circuit state", err);
+    }
+  };
+
+  const goToPage = (pageIndex) => {
+    const pageCursors = pageIndex > page ? [...cursors.slice(0, pageIndex), nextCursor] : cursors;
+    setCursors(pageCursors);
+    fetchLogs(pageIndex, pageCursors);
+  };
+
+  const handleFilterChange = (name, value) => {
+    const pageFilters = { ...filters, [name]: value };
+    setFilters(pageFilters);
+    setCursors([null]);
+    fetchLogs(0, [null], pageFilters);
   };
 
   const handleRetry = async (logId) => {
@@ -42,13 +92,32 @@ export default function WebhookConfig() {
     }
   };
 
-  const handleSaveConfig = (e) => {
+  const handleSaveConfig = async (e) => {
     e.preventDefault();
-    alert('Note: To save the Webhook URL, you need to implement a Backend Endpoint (e.g., PUT /merchant). For now, this is UI only.');
+    try {
+      await axios.put(
+        'http://localhost:8000/api/v1/webhooks/subscription',
+        { url: webhookUrl, events: ['*'] },
+        { headers: { 'X-Api-Key': apiKey, 'X-Api-Secret': apiSecret } }
+      );
+      alert('Webhook URL saved!');
+    } catch (err) {
+      alert('Save Failed: ' + (err.response?.data?.error?.description || err.message));
+    }
   };
 
-  const handleRegenerateSecret = () => {
-    alert('Note: To regenerate the secret, you need to implement a Backend Endpoint (e.g., POST /merchant/regenerate-secret). For now, this is UI only.');
+  const handleRegenerateSecret = async () => {
+    try {
+      const res = await axios.post(
+        'http://localhost:8000/api/v1/webhooks/secret/rotate',
+        {},
+        { headers: { 'X-Api-Key': apiKey, 'X-Api-Secret': apiSecret } }
+      );
+      setSecret(res.data.webhook_secret);
+      alert('Secret rotated. The previous secret stays valid until ' + new Date(res.data.previous_secret_expires_at).toLocaleString());
+    } catch (err) {
+      alert('Rotation Failed: ' + (err.response?.data?.message || err.message));
+    }
   };
 
   const handleTestWebhook = () => {
@@ -82,7 +151,7 @@ export default function WebhookConfig() {
           <span style={{ color: '#666' }}>Webhook Secret: </span>
           <code data-test-id="webhook-secret" style={{ background: '#eee', padding: '2px 5px', borderRadius: '4px' }}>
             {/* Displaying a placeholder or actual secret if available in API response */}
-            {apiSecret || 'Not Logged In'}
+            {secret || apiSecret || 'Not Logged In'}
           </code>
           <button
             data-test-id="regenerate-secret-button"
@@ -106,7 +175,28 @@ export default function WebhookConfig() {
       {/* Logs Section */}
       <div style={{ display: 'flex', justifyContent: 'space-between', alignItems: 'center', marginBottom: '15px' }}>
         <h3 style={{ margin: 0 }}>Delivery Logs</h3>
-        <button onClick={fetchLogs} style={{ background: 'white', border: '1px solid #ccc', padding: '5px 10px', borderRadius: '4px', cursor: 'pointer' }}>
+        {circuit && circuit.state !== 'CLOSED' && (
+          <span data-test-id="webhook-circuit-state" style={{ fontSize: '12px', padding: '2px 6px', borderRadius: '4px', background: '#fee2e2', color: '#991b1b' }}>
+            Endpoint {circuit.state === 'OPEN' ? 'paused' : 'probing'} after {circuit.consecutive_failures} failures
+            {circuit.retry_at && ` (next try ${new Date(circuit.retry_at).toLocaleTimeString()})`}
+          </span>
+        )}
+        <select data-test-id="webhook-event-filter" value={filters.event} onChange={(e) => handleFilterChange('event', e.target.value)}>
+          <option value="">All events</option>
+          <option value="payment.created">payment.created</option>
+          <option value="payment.success">payment.success</option>
+          <option value="payment.failed">payment.failed</option>
+          <option value="refund.created">refund.created</option>
+          <option value="refund.processed">refund.processed</option>
+        </select>
+        <select data-test-id="webhook-status-filter" value={filters.status} onChange={(e) => handleFilterChange('status', e.target.value)}>
+          <option value="">All statuses</option>
+          <option value="pending">pending</option>
+          <option value="success">success</option>
+          <option value="failed">failed</option>
+          <option value="coalesced">coalesced</option>
+        </select>
+        <button onClick={() => fetchLogs()} style={{ background: 'white', border: '1px solid #ccc', padding: '5px 10px', borderRadius: '4px', cursor: 'pointer' }}>
           Refresh
         </button>
       </div>
@@ -132,8 +222,8 @@ export default function WebhookConfig() {
                 <td style={{ padding: '10px' }}>
                   <span style={{
                     padding: '2px 6px', borderRadius: '4px', fontSize: '12px', fontWeight: '500',
-                    background: log.status === 'success' ? '#dcfce7' : log.status === 'failed' ? '#fee2e2' : '#ffedd5',
-                    color: log.status === 'success' ? '#166534' : log.status === 'failed' ? '#991b1b' : '#9a3412'
+                    background: log.status === 'success' ? '#dcfce7' : log.status === 'failed' ? '#fee2e2' : log.status === 'coalesced' ? '#f3f4f6' : '#ffedd5',
+                    color: log.status === 'success' ? '#166534' : log.status === 'failed' ? '#991b1b' : log.status === 'coalesced' ? '#4b5563' : '#9a3412'
                   }}>
                     {log.status}
                   </span>
@@ -146,7 +236,7 @@ export default function WebhookConfig() {
                   <code>{log.response_code || '-'}</code>
                 </td>
                 <td style={{ padding: '10px' }}>
-                  {log.status !== 'success' && (
+                  {log.status !== 'success' && log.status !== 'coalesced' && (
                     <button
                       data-test-id="webhook-retry-button"
                       onClick={() => handleRetry(log.id)}
@@ -161,6 +251,15 @@ export default function WebhookConfig() {
           )}
         </tbody>
       </table>
+
+      <div style={{ display: 'flex', justifyContent: 'space-between', alignItems: 'center', marginTop: '10px', fontSize: '14px', color: '#666' }}>
+        <span>{total != null && `~${total} logs`}</span>
+        <div style={{ display: 'flex', gap: '10px', alignItems: 'center' }}>
+          <button data-test-id="webhook-logs-prev" disabled={page === 0} onClick={() => goToPage(page - 1)}>Previous</button>
+          <span>Page {page + 1}</span>
+          <button data-test-id="webhook-logs-next" disabled={!nextCursor} onClick={() => goToPage(page + 1)}>Next</button>
+        </div>
+      </div>
     </div>
   );
 }
\ No newline at end of file